@@ -0,0 +1,103 @@
+package com.reactivespring.util;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.reactivestreams.Publisher;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Records the find commands the driver sends, so a test can run a real repository method and
+ * explain exactly the query it issued. Register it with {@code @Import(QueryPlanRecorder.Recording.class)}.
+ */
+public class QueryPlanRecorder implements CommandListener {
+
+    // the parts of a find command that decide its plan; session and cursor fields are left out
+    private static final Set<String> PLAN_FIELDS = Set.of("find", "filter", "sort", "hint", "limit", "skip", "projection");
+
+    private final List<BsonDocument> finds = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        if ("find".equals(event.getCommandName())) {
+            finds.add(event.getCommand().clone());
+        }
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+    }
+
+    /**
+     * Runs {@code query} to completion and fails if it issued no find, or if the winning plan of
+     * any find it issued contains a collection scan.
+     */
+    public void assertIndexed(ReactiveMongoTemplate mongoTemplate, Publisher<?> query) {
+        finds.clear();
+        Flux.from(query).blockLast();
+        var issued = new ArrayList<>(finds);
+
+        assertFalse(issued.isEmpty(), "no find command issued");
+        for (var command : issued) {
+            var find = new Document();
+            command.forEach((key, value) -> {
+                if (PLAN_FIELDS.contains(key)) {
+                    find.append(key, value);
+                }
+            });
+            var explain = mongoTemplate.executeCommand(new Document("explain", find).append("verbosity", "queryPlanner"))
+                    .block();
+
+            assertTrue(explain != null && explain.containsKey("queryPlanner"), "no query plan for " + find.toJson());
+            var winningPlan = explain.get("queryPlanner", Document.class).get("winningPlan");
+            assertFalse(hasStage(winningPlan, "COLLSCAN"),
+                    "collection scan for " + find.toJson() + " : " + ((Document) winningPlan).toJson());
+        }
+    }
+
+    // plan shapes vary by server version, so look for the stage anywhere in the tree
+    private static boolean hasStage(Object plan, String stage) {
+        if (plan instanceof Document) {
+            var document = (Document) plan;
+            return stage.equals(document.get("stage"))
+                    || document.values().stream().anyMatch(value -> hasStage(value, stage));
+        }
+        if (plan instanceof List) {
+            return ((List<?>) plan).stream().anyMatch(value -> hasStage(value, stage));
+        }
+        return false;
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    public static class Recording {
+
+        @Bean
+        QueryPlanRecorder queryPlanRecorder() {
+            return new QueryPlanRecorder();
+        }
+
+        @Bean
+        MongoClientSettingsBuilderCustomizer queryPlanRecording(QueryPlanRecorder queryPlanRecorder) {
+            return settings -> settings.addCommandListener(queryPlanRecorder);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.reactivespring.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.reactivespring.domain.EncodedMovieInfo;
+import com.reactivespring.domain.MovieInfo;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Read-through cache of movie infos by id, kept along with their JSON encoding so a hit
+ * is served without going through Jackson again. Ids that aren't found are cached as well,
+ * for {@code negativeExpireAfterWrite}, so repeated lookups of a missing id don't reach Mongo.
+ */
+@Component
+public class MovieInfoCache {
+
+    private final ObjectMapper objectMapper;
+    private final AsyncCache<String, Optional<EncodedMovieInfo>> cache;
+    private final boolean enabled;
+
+    public MovieInfoCache(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                          @Value("${movieInfo.cache.enabled:false}") boolean enabled,
+                          @Value("${movieInfo.cache.maximumSize:10000}") long maximumSize,
+                          @Value("${movieInfo.cache.expireAfterWrite:10m}") Duration expireAfterWrite,
+                          @Value("${movieInfo.cache.negativeExpireAfterWrite:30s}") Duration negativeExpireAfterWrite) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new PresenceExpiry(expireAfterWrite, negativeExpireAfterWrite))
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), "movieInfoById");
+        Gauge.builder("movieinfo.cache.hit.ratio", this, MovieInfoCache::hitRate)
+                .description("Share of movie info lookups by id served from the cache")
+                .register(meterRegistry);
+    }
+
+    public Mono<EncodedMovieInfo> get(String movieInfoId, Function<String, Mono<MovieInfo>> loader) {
+        if (!enabled) {
+            return loader.apply(movieInfoId).flatMap(this::encode);
+        }
+        // a dependent future, so a cancelled caller can't cancel the load shared with other callers
+        return Mono.fromFuture(() -> cache.get(movieInfoId, (id, executor) -> loader.apply(id)
+                                .flatMap(this::encode)
+                                .map(Optional::of)
+                                .defaultIfEmpty(Optional.empty())
+                                .toFuture())
+                        .thenApply(Function.identity()))
+                .flatMap(Mono::justOrEmpty);
+    }
+
+    private Mono<EncodedMovieInfo> encode(MovieInfo movieInfo) {
+        return Mono.fromCallable(() -> EncodedMovieInfo.encode(objectMapper, movieInfo));
+    }
+
+    public void invalidate(String movieInfoId) {
+        if (movieInfoId != null) {
+            cache.synchronous().invalidate(movieInfoId);
+        }
+    }
+
+    public double hitRate() {
+        return cache.synchronous().stats().hitRate();
+    }
+
+    private static class PresenceExpiry implements Expiry<String, Optional<EncodedMovieInfo>> {
+        private final long presentNanos;
+        private final long absentNanos;
+
+        private PresenceExpiry(Duration present, Duration absent) {
+            this.presentNanos = present.toNanos();
+            this.absentNanos = absent.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(String id, Optional<EncodedMovieInfo> movieInfo, long currentTime) {
+            return movieInfo.isPresent() ? presentNanos : absentNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(String id, Optional<EncodedMovieInfo> movieInfo, long currentTime, long currentDuration) {
+            return expireAfterCreate(id, movieInfo, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String id, Optional<EncodedMovieInfo> movieInfo, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.reactivespring.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.util.NdjsonStreamWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class StreamConfiguration {
+
+    @Bean
+    public NdjsonStreamWriter movieInfoStreamWriter(
+            ObjectMapper objectMapper,
+            @Value("${movieInfo.stream.heartbeatInterval:15s}") Duration heartbeatInterval,
+            @Value("${movieInfo.stream.batch.maxSize:500}") int maxBatchSize,
+            @Value("${movieInfo.stream.batch.defaultMaxDelay:20ms}") Duration defaultMaxDelay,
+            @Value("${movieInfo.stream.batch.maxDelayLimit:1s}") Duration maxDelayLimit) {
+        return new NdjsonStreamWriter(objectMapper, heartbeatInterval, maxBatchSize, defaultMaxDelay, maxDelayLimit);
+    }
+}
@@ -1,67 +1,167 @@
 package com.reactivespring.controller;
 
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBulkResult;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.domain.MovieInfoEvent.Operation;
+import com.reactivespring.domain.MovieInfoSort;
+import com.reactivespring.exception.InvalidPageRequestException;
+import com.reactivespring.service.MovieInfoBulkLoader;
+import com.reactivespring.service.MovieInfoEventStore;
 import com.reactivespring.service.MoviesInfoService;
+import com.reactivespring.util.NdjsonStreamWriter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.Sinks;
 
 import javax.validation.Valid;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/v1")
 @RequiredArgsConstructor
 public class MovieInfosServiceController {
 
+    public static final String NEXT_PAGE_TOKEN_HEADER = "X-Next-Page-Token";
+    // matches the limit on movieInfoIds in the review service
+    static final int MAX_IDS = 100;
+    private static final int DEFAULT_PAGE_SIZE = 100;
+
     private final MoviesInfoService moviesInfoService;
-    private final Sinks.Many<MovieInfo> moviesInfoSink = Sinks.many().replay().all();
+    private final MovieInfoEventStore movieInfoEventStore;
+    private final NdjsonStreamWriter movieInfoStreamWriter;
+    private final MovieInfoBulkLoader movieInfoBulkLoader;
+
+    // with the change stream on, the store is fed from Mongo instead of from this instance's writes
+    @Value("${movieInfo.stream.changeStream.enabled:false}")
+    private boolean changeStreamEnabled;
 
     @PostMapping("/movieinfos")
     @ResponseStatus(HttpStatus.CREATED)
     public Mono<MovieInfo> addMovieInfo(@RequestBody @Valid MovieInfo movieInfo){
         return moviesInfoService.addMovieInfos(movieInfo)
-                .doOnNext(moviesInfoSink::tryEmitNext);
+                .doOnNext(savedMovieInfo -> publishLocally(Operation.INSERT, savedMovieInfo));
+    }
+
+    @PostMapping(value = "/movieinfos/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<MovieInfoBulkResult> addMovieInfosInBulk(@RequestBody Flux<String> lines){
+        return movieInfoBulkLoader.load(lines, movieInfo -> publishLocally(Operation.INSERT, movieInfo));
+    }
+
+    private void publishLocally(Operation operation, MovieInfo movieInfo) {
+        if (!changeStreamEnabled) {
+            movieInfoEventStore.publish(operation, movieInfo, null);
+        }
     }
 
     @GetMapping(value = "/movieinfos/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
     @ResponseStatus(HttpStatus.OK)
-    public Flux<MovieInfo> stream(){
-        return moviesInfoSink.asFlux();
+    public Mono<Void> stream(@RequestParam(name = "fromOffset", required = false) Long fromOffset,
+                             @RequestHeader(name = "Last-Event-ID", required = false) Long lastEventId,
+                             @RequestParam(name = "epoch", required = false) String epoch,
+                             @RequestParam(name = "resumeToken", required = false) String resumeToken,
+                             @RequestParam(name = "batch", required = false) Integer batch,
+                             @RequestParam(name = "maxDelayMs", required = false) Long maxDelayMs,
+                             ServerHttpResponse response){
+        Flux<MovieInfoEvent> events;
+        if (changeStreamEnabled && resumeToken != null) {
+            // offsets are per instance; a resume token works wherever the load balancer sends the client
+            events = moviesInfoService.resumeMovieInfoChanges(resumeToken);
+        } else {
+            var resumeAfter = fromOffset != null ? fromOffset : lastEventId != null ? lastEventId : 0L;
+            events = movieInfoEventStore.eventsAfter(resumeAfter, epoch);
+        }
+        response.getHeaders().setContentType(MediaType.APPLICATION_NDJSON);
+        // one flush per batch rather than per event
+        return response.writeAndFlushWith(movieInfoStreamWriter.write(events, batch, maxDelayMs, response.bufferFactory())
+                .map(Flux::just));
     }
 
     @GetMapping("/movieinfos")
     @ResponseStatus(HttpStatus.OK)
-    public Flux<MovieInfo> getAllMovieInfos(@RequestParam(name = "year", required = false) Integer year){
-        if(year != null){
-            return moviesInfoService.getMovieInfoByYear(year);
+    public Mono<ResponseEntity<List<MovieInfo>>> getAllMovieInfos(@RequestParam(name = "year", required = false) Integer year,
+                                                                  @RequestParam(name = "ids", required = false) List<String> ids,
+                                                                  @RequestParam(name = "sort", required = false) String sort,
+                                                                  @RequestParam(name = "after", required = false) String after,
+                                                                  @RequestParam(name = "limit", required = false) Integer limit){
+        if(ids != null && !ids.isEmpty()){
+            // a lookup by ids is answered in one response; paging it is not supported
+            if (year != null || sort != null || after != null || limit != null) {
+                throw new InvalidPageRequestException("ids can't be combined with year, sort, after or limit");
+            }
+            var distinctIds = ids.stream()
+                    .map(String::trim)
+                    .distinct()
+                    .collect(Collectors.toList());
+            if (distinctIds.size() > MAX_IDS) {
+                throw new InvalidPageRequestException("At most " + MAX_IDS + " ids can be requested at once");
+            }
+            return moviesInfoService.getMovieInfosByIds(distinctIds)
+                    .collectList()
+                    .map(ResponseEntity.ok()::body);
+        }
+        return moviesInfoService.getMovieInfosPage(year, toSort(sort != null ? sort : "id"), after, limit != null ? limit : DEFAULT_PAGE_SIZE)
+                .map(page -> {
+                    var response = ResponseEntity.ok();
+                    if (page.getNextPageToken() != null) {
+                        response.header(NEXT_PAGE_TOKEN_HEADER, page.getNextPageToken());
+                    }
+                    return response.body(page.getMovieInfos());
+                });
+    }
+
+    private static MovieInfoSort toSort(String sort) {
+        try {
+            return MovieInfoSort.valueOf(sort.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidPageRequestException("sort must be one of " + Arrays.toString(MovieInfoSort.values()).toLowerCase(Locale.ROOT));
         }
-        return moviesInfoService.getAllMovieInfos();
     }
 
     @GetMapping("/movieinfos/{id}")
     @ResponseStatus(HttpStatus.OK)
-    public Mono<ResponseEntity<MovieInfo>> getMovieInfoById(@PathVariable(name = "id") String id){
-        return moviesInfoService.getMovieInfosById(id)
-                .map(ResponseEntity.ok()::body)
+    public Mono<ResponseEntity<byte[]>> getMovieInfoById(@PathVariable(name = "id") String id){
+        // already encoded, so the bytes are written as is rather than through Jackson; a GET whose
+        // If-None-Match matches the ETag is answered with a bodiless 304 by the ResponseEntity handling
+        return moviesInfoService.getEncodedMovieInfoById(id)
+                .map(encodedMovieInfo -> ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .eTag(encodedMovieInfo.getETag())
+                        .body(encodedMovieInfo.getJson()))
                 .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()));
     }
 
     @PutMapping("/movieinfos/{id}")
     public Mono<ResponseEntity<MovieInfo>> updateMovieInfo(@RequestBody MovieInfo updatedMovieInfo, @PathVariable(name = "id") String id){
         return moviesInfoService.updateMovieInfo(updatedMovieInfo, id)
+                .doOnNext(movieInfo -> publishLocally(Operation.UPDATE, movieInfo))
                 .map(ResponseEntity.ok()::body)
                 .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()))
                 .log();
     }
 
+    @PatchMapping("/movieinfos/{id}")
+    public Mono<ResponseEntity<MovieInfo>> patchMovieInfo(@RequestBody MovieInfo changes, @PathVariable(name = "id") String id){
+        return moviesInfoService.patchMovieInfo(changes, id)
+                .doOnNext(movieInfo -> publishLocally(Operation.UPDATE, movieInfo))
+                .map(ResponseEntity.ok()::body)
+                .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()));
+    }
+
     @DeleteMapping("/movieinfos/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public Mono<Void> deleteMovieInfo(@PathVariable(name = "id") String id){
-        return moviesInfoService.deleteMovieInfo(id);
+        return moviesInfoService.deleteMovieInfo(id)
+                .doOnNext(deleted -> publishLocally(Operation.DELETE, new MovieInfo(id, null, null, null, null)))
+                .then();
     }
 }
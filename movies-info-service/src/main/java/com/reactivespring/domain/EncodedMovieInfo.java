@@ -0,0 +1,25 @@
+package com.reactivespring.domain;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.util.DigestUtils;
+
+/**
+ * A movie info together with its JSON encoding and a strong ETag derived from that encoding.
+ * The bytes are never modified once encoded, so they can back any number of responses.
+ */
+@Getter
+@AllArgsConstructor
+public class EncodedMovieInfo {
+    private final MovieInfo movieInfo;
+    private final byte[] json;
+    // quoted, ready for the ETag header
+    private final String eTag;
+
+    public static EncodedMovieInfo encode(ObjectMapper objectMapper, MovieInfo movieInfo) throws JsonProcessingException {
+        var json = objectMapper.writeValueAsBytes(movieInfo);
+        return new EncodedMovieInfo(movieInfo, json, "\"" + DigestUtils.md5DigestAsHex(json) + "\"");
+    }
+}
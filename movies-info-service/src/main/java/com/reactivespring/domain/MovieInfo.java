@@ -4,6 +4,9 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.validation.constraints.NotBlank;
@@ -16,10 +19,16 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document
+// year+_id backs keyset paging by year; both compound indexes also serve findByYear
+@CompoundIndexes({
+        @CompoundIndex(name = "year_release_date", def = "{'year': 1, 'release_date': 1}"),
+        @CompoundIndex(name = "year_id", def = "{'year': 1, '_id': 1}")
+})
 public class MovieInfo {
     @Id
     private String movieInfoId;
     @NotBlank(message = "movieInfo.name is required")
+    @Indexed
     private String name;
     @NotNull(message = "movieInfo.year is required")
     @Positive(message = "movieInfo.year must be a positive number")
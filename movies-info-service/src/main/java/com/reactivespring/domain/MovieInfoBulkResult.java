@@ -0,0 +1,24 @@
+package com.reactivespring.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one line of a bulk load; {@code line} is its zero-based position in the request body.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MovieInfoBulkResult {
+    private long line;
+    private Status status;
+    private String movieInfoId;
+    private String error;
+
+    public enum Status {
+        CREATED, INVALID, FAILED
+    }
+}
@@ -0,0 +1,31 @@
+package com.reactivespring.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A MovieInfo change as published on the change stream, serialized as the MovieInfo's own
+ * fields plus the offset and epoch a client passes back as {@code fromOffset} and {@code epoch}
+ * to resume on the same instance, and, when fed from a Mongo change stream, a {@code resumeToken}
+ * that resumes on any instance. A DELETE carries only the movieInfoId.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MovieInfoEvent {
+    private long offset;
+    // identifies the run of the instance that numbered the offset
+    private String epoch;
+    private Operation operation;
+    private String resumeToken;
+    @JsonUnwrapped
+    private MovieInfo movieInfo;
+
+    public enum Operation {
+        INSERT, UPDATE, DELETE
+    }
+}
@@ -0,0 +1,9 @@
+package com.reactivespring.domain;
+
+/**
+ * Keyset orders for paging through movie infos; every order ends on _id so keys are unique.
+ */
+public enum MovieInfoSort {
+    ID,
+    YEAR
+}
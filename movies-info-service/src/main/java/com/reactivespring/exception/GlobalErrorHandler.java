@@ -28,4 +28,10 @@ public class GlobalErrorHandler {
 
     }
 
+    @ExceptionHandler(InvalidPageRequestException.class)
+    public ResponseEntity<String> handleInvalidPageRequest(InvalidPageRequestException ex){
+        log.error("Exception caught in handleInvalidPageRequest: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+    }
+
 }
@@ -0,0 +1,38 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoSort;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+public interface MovieInfoRepositoryCustom {
+
+    /**
+     * Up to {@code limit} movie infos ordered by {@code sort}, starting right after {@code after}
+     * (the last movie info of the previous page, only its key fields need to be set) and
+     * optionally restricted to one {@code year}.
+     */
+    Flux<MovieInfo> findPage(Integer year, MovieInfoSort sort, MovieInfo after, int limit);
+
+    /**
+     * Sets name, year, cast and release_date from {@code changes} in one findAndModify and
+     * returns the updated movie info, or empty if there is none with {@code id}. With
+     * {@code partial} only the non-null fields of {@code changes} are set.
+     */
+    Mono<MovieInfo> updateFields(String id, MovieInfo changes, boolean partial);
+
+    /**
+     * Inserts {@code movieInfos} in one unordered insertMany, assigning ids to those without one.
+     * A failed document doesn't stop the rest; the result maps each failed position to its error.
+     */
+    Mono<Map<Integer, String>> insertAllUnordered(List<MovieInfo> movieInfos);
+
+    /**
+     * Deletes the movie info and returns it, or empty if it was already gone, so concurrent
+     * deletes of one movie info see it removed exactly once.
+     */
+    Mono<MovieInfo> findAndRemoveById(String id);
+}
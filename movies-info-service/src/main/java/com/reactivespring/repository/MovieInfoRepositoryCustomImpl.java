@@ -0,0 +1,120 @@
+package com.reactivespring.repository;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.InsertManyOptions;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoSort;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.schema.JsonSchemaObject;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+public class MovieInfoRepositoryCustomImpl implements MovieInfoRepositoryCustom {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final int cursorBatchSize;
+
+    public MovieInfoRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate,
+                                         @Value("${movieInfo.query.cursorBatchSize:100}") int cursorBatchSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.cursorBatchSize = cursorBatchSize;
+    }
+
+    @Override
+    public Flux<MovieInfo> findPage(Integer year, MovieInfoSort sort, MovieInfo after, int limit) {
+        var query = new Query();
+        // within a single year the year key is constant, so _id alone orders the page
+        var byYear = sort == MovieInfoSort.YEAR && year == null;
+
+        if (year != null) {
+            query.addCriteria(where("year").is(year));
+        }
+        if (after != null) {
+            query.addCriteria(byYear
+                    ? new Criteria().orOperator(
+                            where("year").gt(after.getYear()),
+                            new Criteria().andOperator(where("year").is(after.getYear()), idAfter(after.getMovieInfoId())))
+                    : idAfter(after.getMovieInfoId()));
+        }
+
+        query.with(byYear ? Sort.by("year", "_id") : Sort.by("_id"))
+                .limit(limit)
+                .cursorBatchSize(cursorBatchSize);
+
+        return mongoTemplate.find(query, MovieInfo.class);
+    }
+
+    /**
+     * Ids are stored as ObjectIds when they are valid ObjectId hex and as Strings otherwise. Mongo
+     * sorts every String before every ObjectId, and $gt only matches values of its own type, so
+     * past a String id the seek must still take in all the ObjectIds.
+     */
+    private static Criteria idAfter(String id) {
+        return ObjectId.isValid(id)
+                ? where("_id").gt(new ObjectId(id))
+                : new Criteria().orOperator(
+                        where("_id").gt(id),
+                        where("_id").type(JsonSchemaObject.Type.objectIdType()));
+    }
+
+    @Override
+    public Mono<MovieInfo> updateFields(String id, MovieInfo changes, boolean partial) {
+        var update = new Update();
+        setIfPresent(update, "name", changes.getName(), partial);
+        setIfPresent(update, "year", changes.getYear(), partial);
+        setIfPresent(update, "cast", changes.getCast(), partial);
+        setIfPresent(update, "release_date", changes.getRelease_date(), partial);
+
+        var query = Query.query(where("_id").is(id));
+        if (update.getUpdateObject().isEmpty()) {
+            return mongoTemplate.findOne(query, MovieInfo.class);
+        }
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), MovieInfo.class);
+    }
+
+    private static void setIfPresent(Update update, String key, Object value, boolean partial) {
+        if (!partial || value != null) {
+            update.set(key, value);
+        }
+    }
+
+    @Override
+    public Mono<MovieInfo> findAndRemoveById(String id) {
+        return mongoTemplate.findAndRemove(Query.query(where("_id").is(id)), MovieInfo.class);
+    }
+
+    @Override
+    public Mono<Map<Integer, String>> insertAllUnordered(List<MovieInfo> movieInfos) {
+        var documents = movieInfos.stream()
+                .map(movieInfo -> {
+                    if (movieInfo.getMovieInfoId() == null) {
+                        movieInfo.setMovieInfoId(new ObjectId().toHexString());
+                    }
+                    var document = new Document();
+                    mongoTemplate.getConverter().write(movieInfo, document);
+                    return document;
+                })
+                .collect(Collectors.toList());
+
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(MovieInfo.class))
+                .flatMap(collection -> Mono.from(collection.insertMany(documents, new InsertManyOptions().ordered(false))))
+                .map(result -> Map.<Integer, String>of())
+                .onErrorResume(MongoBulkWriteException.class, ex -> Mono.just(ex.getWriteErrors().stream()
+                        .collect(Collectors.toMap(BulkWriteError::getIndex, BulkWriteError::getMessage))));
+    }
+}
@@ -0,0 +1,145 @@
+package com.reactivespring.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.cache.MovieInfoCache;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBulkResult;
+import com.reactivespring.domain.MovieInfoBulkResult.Status;
+import com.reactivespring.repository.MovieInfoRepository;
+import com.reactivespring.util.DemandBatcher;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Loads NDJSON movie infos in size- and time-bounded unordered insertMany batches.
+ * Batches are written one at a time with at most one more waiting, so a slow Mongo slows down
+ * reading of the request body.
+ */
+@Component
+@Slf4j
+public class MovieInfoBulkLoader {
+
+    private final MovieInfoRepository repository;
+    private final MovieInfoCache movieInfoCache;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int batchSize;
+    private final Duration maxDelay;
+
+    public MovieInfoBulkLoader(MovieInfoRepository repository, MovieInfoCache movieInfoCache, ObjectMapper objectMapper, Validator validator,
+                               @Value("${movieInfo.bulk.batchSize:500}") int batchSize,
+                               @Value("${movieInfo.bulk.maxDelay:100ms}") Duration maxDelay) {
+        this.repository = repository;
+        this.movieInfoCache = movieInfoCache;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.batchSize = batchSize;
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * One result per non-blank line, in line order. {@code onInserted} sees each stored movie info.
+     */
+    public Flux<MovieInfoBulkResult> load(Flux<String> lines, Consumer<MovieInfo> onInserted) {
+        return lines.index()
+                .filter(line -> !line.getT2().isBlank())
+                .map(this::parse)
+                // bufferTimeout fails the upload with an overflow error if its timer fires while a slow
+                // insertMany holds back demand; this batcher waits for demand instead
+                .transform(parsedLines -> DemandBatcher.batch(parsedLines, batchSize, maxDelay))
+                .concatMap(batch -> write(batch, onInserted), 1);
+    }
+
+    private ParsedLine parse(Tuple2<Long, String> line) {
+        MovieInfo movieInfo;
+        try {
+            movieInfo = objectMapper.readValue(line.getT2(), MovieInfo.class);
+        } catch (JsonProcessingException e) {
+            return ParsedLine.invalid(line.getT1(), "Malformed JSON : " + e.getOriginalMessage());
+        }
+        // a bare null parses without error, but there is no movie info to validate
+        if (movieInfo == null) {
+            return ParsedLine.invalid(line.getT1(), "Expected a movie info object");
+        }
+
+        var constraintViolations = validator.validate(movieInfo);
+        if (!constraintViolations.isEmpty()) {
+            var errorMessage = constraintViolations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining(","));
+            return ParsedLine.invalid(line.getT1(), errorMessage);
+        }
+        return ParsedLine.valid(line.getT1(), movieInfo);
+    }
+
+    private Flux<MovieInfoBulkResult> write(List<ParsedLine> batch, Consumer<MovieInfo> onInserted) {
+        var valid = batch.stream()
+                .filter(parsedLine -> parsedLine.movieInfo != null)
+                .collect(Collectors.toList());
+        var inserted = valid.isEmpty()
+                ? Mono.just(Map.<Integer, String>of())
+                : repository.insertAllUnordered(valid.stream().map(parsedLine -> parsedLine.movieInfo).collect(Collectors.toList()));
+
+        return inserted
+                .onErrorResume(ex -> {
+                    log.error("Bulk insert of {} movie infos failed : {}", valid.size(), ex.getMessage());
+                    return Mono.just(IntStream.range(0, valid.size()).boxed()
+                            .collect(Collectors.toMap(position -> position, position -> ex.getMessage())));
+                })
+                .flatMapIterable(failures -> {
+                    var position = 0;
+                    var results = new ArrayList<MovieInfoBulkResult>(batch.size());
+                    for (var parsedLine : batch) {
+                        if (parsedLine.movieInfo == null) {
+                            results.add(new MovieInfoBulkResult(parsedLine.line, Status.INVALID, null, parsedLine.error));
+                            continue;
+                        }
+                        var failure = failures.get(position++);
+                        if (failure != null) {
+                            results.add(new MovieInfoBulkResult(parsedLine.line, Status.FAILED, parsedLine.movieInfo.getMovieInfoId(), failure));
+                        } else {
+                            movieInfoCache.invalidate(parsedLine.movieInfo.getMovieInfoId());
+                            onInserted.accept(parsedLine.movieInfo);
+                            results.add(new MovieInfoBulkResult(parsedLine.line, Status.CREATED, parsedLine.movieInfo.getMovieInfoId(), null));
+                        }
+                    }
+                    return results;
+                });
+    }
+
+    private static class ParsedLine {
+        private final long line;
+        private final MovieInfo movieInfo;
+        private final String error;
+
+        private ParsedLine(long line, MovieInfo movieInfo, String error) {
+            this.line = line;
+            this.movieInfo = movieInfo;
+            this.error = error;
+        }
+
+        static ParsedLine valid(long line, MovieInfo movieInfo) {
+            return new ParsedLine(line, movieInfo, null);
+        }
+
+        static ParsedLine invalid(long line, String error) {
+            return new ParsedLine(line, null, error);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.reactivespring.service;
+
+import com.reactivespring.cache.MovieInfoCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Feeds the event store from the Mongo change stream, so writes made through any
+ * instance reach the stream subscribers of every instance and evict its cached movie info.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "movieInfo.stream.changeStream.enabled", havingValue = "true")
+public class MovieInfoChangeFeedListener {
+
+    private final MoviesInfoService moviesInfoService;
+    private final MovieInfoEventStore movieInfoEventStore;
+    private final MovieInfoCache movieInfoCache;
+    private Disposable subscription;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void subscribeToChanges() {
+        var startedAt = Instant.now();
+        var lastResumeToken = new AtomicReference<String>();
+
+        subscription = Flux.defer(() -> moviesInfoService.getMovieInfoChanges(lastResumeToken.get(), startedAt))
+                .doOnNext(change -> lastResumeToken.set(change.getResumeToken()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .transientErrors(true)
+                        .doBeforeRetry(retrySignal -> log.warn("Reopening MovieInfo change stream : {}",
+                                retrySignal.failure().getMessage())))
+                .subscribe(change -> {
+                            movieInfoCache.invalidate(change.getMovieInfo().getMovieInfoId());
+                            movieInfoEventStore.publish(change.getOperation(), change.getMovieInfo(), change.getResumeToken());
+                        },
+                        ex -> log.error("MovieInfo change stream terminated : {}", ex.getMessage()));
+    }
+
+    @PreDestroy
+    public void close() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+}
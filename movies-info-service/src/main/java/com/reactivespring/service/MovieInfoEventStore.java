@@ -0,0 +1,239 @@
+package com.reactivespring.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.util.SlowConsumerBuffer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Replay store behind the movie info change stream. Retains at most {@code maxEvents}
+ * events, {@code maxBytes} of their serialized size and nothing older than {@code maxAge};
+ * with compaction on only the latest event per movieInfoId is kept, so a new subscriber
+ * gets the current state of each movie followed by live events.
+ */
+@Component
+@Slf4j
+public class MovieInfoEventStore {
+
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+    private final int maxEvents;
+    private final long maxBytes;
+    private final Duration maxAge;
+    private final boolean compact;
+    private final SlowConsumerBuffer subscriberBuffer;
+
+    // keyed by offset, iterated oldest first
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>();
+    private final Map<String, Long> latestOffsetById = new HashMap<>();
+    // Mongo resume token -> offset of its event, for the last maxEvents events whether compacted away or not
+    private final LinkedHashMap<String, Long> offsetByResumeToken = new LinkedHashMap<>();
+    private final Sinks.Many<MovieInfoEvent> liveSink = Sinks.many().multicast().directBestEffort();
+    // offsets restart at 1 with every run, so they are only comparable within one epoch
+    private final String epoch = UUID.randomUUID().toString();
+    private long lastOffset;
+    // every event after this offset is retained, or was compacted into a later one
+    private long evictedThrough;
+    private long retainedBytes;
+
+    @Autowired
+    public MovieInfoEventStore(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                               @Value("${movieInfo.stream.replay.maxEvents:10000}") int maxEvents,
+                               @Value("${movieInfo.stream.replay.maxBytes:16777216}") long maxBytes,
+                               @Value("${movieInfo.stream.replay.maxAge:24h}") Duration maxAge,
+                               @Value("${movieInfo.stream.replay.compact:true}") boolean compact,
+                               @Value("${movieInfo.stream.subscriberBufferSize:1024}") int subscriberBufferSize,
+                               @Value("${movieInfo.stream.slowConsumerPolicy:disconnect}") SlowConsumerBuffer.Policy slowConsumerPolicy) {
+        this(objectMapper, meterRegistry, Clock.systemUTC(), maxEvents, maxBytes, maxAge, compact,
+                new SlowConsumerBuffer("movieinfo.stream", slowConsumerPolicy, subscriberBufferSize, meterRegistry));
+    }
+
+    MovieInfoEventStore(ObjectMapper objectMapper, MeterRegistry meterRegistry, Clock clock,
+                        int maxEvents, long maxBytes, Duration maxAge, boolean compact, SlowConsumerBuffer subscriberBuffer) {
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+        this.maxEvents = maxEvents;
+        this.maxBytes = maxBytes;
+        this.maxAge = maxAge;
+        this.compact = compact;
+        this.subscriberBuffer = subscriberBuffer;
+        Gauge.builder("movieinfo.stream.replay.events", this, MovieInfoEventStore::size)
+                .description("Events retained for replay to new stream subscribers")
+                .register(meterRegistry);
+        Gauge.builder("movieinfo.stream.replay.bytes", this, MovieInfoEventStore::bytes)
+                .description("Serialized size of the events retained for replay")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public synchronized MovieInfoEvent publish(MovieInfoEvent.Operation operation, MovieInfo movieInfo, String resumeToken) {
+        var event = new MovieInfoEvent(++lastOffset, epoch, operation, resumeToken, movieInfo);
+        var entry = new Entry(event, clock.instant(), sizeOf(event));
+
+        var movieInfoId = movieInfo.getMovieInfoId();
+        if (compact && movieInfoId != null) {
+            var previousOffset = latestOffsetById.put(movieInfoId, event.getOffset());
+            if (previousOffset != null) {
+                remove(previousOffset);
+            }
+        }
+        entries.put(event.getOffset(), entry);
+        retainedBytes += entry.bytes;
+        if (resumeToken != null) {
+            offsetByResumeToken.put(resumeToken, event.getOffset());
+            if (offsetByResumeToken.size() > maxEvents) {
+                var eldest = offsetByResumeToken.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        evict();
+
+        liveSink.tryEmitNext(event);
+        return event;
+    }
+
+    public Flux<MovieInfoEvent> eventsAfter(long offset) {
+        return eventsAfter(offset, null);
+    }
+
+    /**
+     * Retained events after {@code offset} followed by live ones. An offset from another
+     * {@code epoch} was handed out before a restart or by another instance, so the replay
+     * starts over; without an epoch, only an offset ahead of the last one published gives that away.
+     */
+    public Flux<MovieInfoEvent> eventsAfter(long offset, String epoch) {
+        return replay(() -> (epoch != null ? !epoch.equals(this.epoch) : offset > lastOffset) ? 0L : offset);
+    }
+
+    /**
+     * Retained events after the one with Mongo {@code resumeToken} followed by live ones, or
+     * empty when the store can't replay everything after that token, see {@link #canResumeAfter}.
+     */
+    public Flux<MovieInfoEvent> eventsAfter(String resumeToken) {
+        return replay(() -> resumableOffset(resumeToken));
+    }
+
+    /**
+     * Whether the store saw the change with this Mongo resume token and still holds every change since.
+     */
+    public synchronized boolean canResumeAfter(String resumeToken) {
+        evict();
+        return resumableOffset(resumeToken) != null;
+    }
+
+    // called holding the lock
+    private Long resumableOffset(String resumeToken) {
+        var offset = offsetByResumeToken.get(resumeToken);
+        return offset != null && offset >= evictedThrough ? offset : null;
+    }
+
+    private Flux<MovieInfoEvent> replay(Supplier<Long> afterOffset) {
+        return Flux.defer(() -> {
+            var connection = Disposables.swap();
+            Flux<MovieInfoEvent> live;
+            List<MovieInfoEvent> snapshot;
+            synchronized (this) {
+                evict();
+                var after = afterOffset.get();
+                if (after == null) {
+                    return Flux.empty();
+                }
+                snapshot = entries.values().stream()
+                        .map(entry -> entry.event)
+                        .filter(event -> event.getOffset() > after)
+                        .collect(Collectors.toList());
+                // connected while holding the lock, so nothing published after the snapshot is missed
+                live = subscriberBuffer.apply(liveSink.asFlux(), event -> event.getMovieInfo().getMovieInfoId())
+                        .publish()
+                        .autoConnect(0, connection::update);
+            }
+            return Flux.fromIterable(snapshot)
+                    .concatWith(live)
+                    .doFinally(signalType -> connection.dispose());
+        });
+    }
+
+    public String epoch() {
+        return epoch;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long bytes() {
+        return retainedBytes;
+    }
+
+    private void evict() {
+        var oldestRetained = clock.instant().minus(maxAge);
+        var iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            var eldest = iterator.next();
+            if (entries.size() <= maxEvents && retainedBytes <= maxBytes && !eldest.publishedAt.isBefore(oldestRetained)) {
+                break;
+            }
+            iterator.remove();
+            evictedThrough = eldest.event.getOffset();
+            forget(eldest);
+        }
+    }
+
+    private void remove(long offset) {
+        var entry = entries.remove(offset);
+        if (entry != null) {
+            retainedBytes -= entry.bytes;
+        }
+    }
+
+    private void forget(Entry entry) {
+        retainedBytes -= entry.bytes;
+        var movieInfoId = entry.event.getMovieInfo().getMovieInfoId();
+        if (movieInfoId != null) {
+            latestOffsetById.remove(movieInfoId, entry.event.getOffset());
+        }
+    }
+
+    private long sizeOf(MovieInfoEvent event) {
+        try {
+            return objectMapper.writeValueAsBytes(event).length;
+        } catch (JsonProcessingException e) {
+            log.warn("Unable to size event at offset {} : {}", event.getOffset(), e.getMessage());
+            return 0;
+        }
+    }
+
+    private static class Entry {
+        private final MovieInfoEvent event;
+        private final Instant publishedAt;
+        private final long bytes;
+
+        private Entry(MovieInfoEvent event, Instant publishedAt, long bytes) {
+            this.event = event;
+            this.publishedAt = publishedAt;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -1,47 +1,216 @@
 package com.reactivespring.service;
 
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.reactivespring.cache.MovieInfoCache;
+import com.reactivespring.domain.EncodedMovieInfo;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.domain.MovieInfoPage;
+import com.reactivespring.domain.MovieInfoSort;
+import com.reactivespring.exception.InvalidPageRequestException;
 import com.reactivespring.repository.MovieInfoRepository;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
 @Service
 public class MoviesInfoService {
     private MovieInfoRepository repository;
+    private ReactiveMongoTemplate mongoTemplate;
+    private MovieInfoCache movieInfoCache;
+    private MovieInfoEventStore movieInfoEventStore;
+
+    private int maxPageSize;
+    // change streams opened for clients resuming from further back than the event store reaches
+    private Semaphore catchUpCursors;
 
-    public MoviesInfoService(MovieInfoRepository repository) {
+    public MoviesInfoService(MovieInfoRepository repository, ReactiveMongoTemplate mongoTemplate, MovieInfoCache movieInfoCache,
+                             MovieInfoEventStore movieInfoEventStore,
+                             @Value("${movieInfo.page.maxSize:1000}") int maxPageSize,
+                             @Value("${movieInfo.stream.changeStream.maxCatchUpCursors:16}") int maxCatchUpCursors) {
         this.repository = repository;
+        this.mongoTemplate = mongoTemplate;
+        this.movieInfoCache = movieInfoCache;
+        this.movieInfoEventStore = movieInfoEventStore;
+        this.maxPageSize = maxPageSize;
+        this.catchUpCursors = new Semaphore(maxCatchUpCursors);
     }
 
     public Mono<MovieInfo> addMovieInfos(MovieInfo movieInfo){
-        return repository.save(movieInfo);
+        return repository.save(movieInfo)
+                .doOnSuccess(savedMovieInfo -> movieInfoCache.invalidate(savedMovieInfo.getMovieInfoId()));
+    }
+
+    /**
+     * One page of movie infos, optionally for a single year. {@code pageToken} is the
+     * nextPageToken of the previous page, or null for the first page.
+     */
+    public Mono<MovieInfoPage> getMovieInfosPage(Integer year, MovieInfoSort sort, String pageToken, int limit) {
+        if (limit < 1 || limit > maxPageSize) {
+            return Mono.error(new InvalidPageRequestException("limit must be between 1 and " + maxPageSize));
+        }
+
+        MovieInfo after;
+        try {
+            after = decodePageToken(sort, pageToken);
+        } catch (InvalidPageRequestException e) {
+            return Mono.error(e);
+        }
+
+        // one extra row tells whether there is a next page
+        return repository.findPage(year, sort, after, limit + 1)
+                .collectList()
+                .map(movieInfos -> movieInfos.size() > limit
+                        ? new MovieInfoPage(movieInfos.subList(0, limit), encodePageToken(sort, movieInfos.get(limit - 1)))
+                        : new MovieInfoPage(movieInfos, null));
     }
 
-    public Flux<MovieInfo> getAllMovieInfos() {
-        return repository.findAll();
+    // tokens name their sort, so one can't be replayed against a different order
+    private static String encodePageToken(MovieInfoSort sort, MovieInfo last) {
+        var key = sort == MovieInfoSort.YEAR
+                ? sort + ":" + last.getYear() + ":" + last.getMovieInfoId()
+                : sort + ":" + last.getMovieInfoId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static MovieInfo decodePageToken(MovieInfoSort sort, String pageToken) {
+        if (pageToken == null) {
+            return null;
+        }
+        try {
+            var parts = new String(Base64.getUrlDecoder().decode(pageToken), StandardCharsets.UTF_8)
+                    .split(":", sort == MovieInfoSort.YEAR ? 3 : 2);
+            if (parts.length != (sort == MovieInfoSort.YEAR ? 3 : 2) || !parts[0].equals(sort.name())) {
+                throw new InvalidPageRequestException("Page token does not match sort " + sort);
+            }
+            return sort == MovieInfoSort.YEAR
+                    ? new MovieInfo(parts[2], null, Integer.valueOf(parts[1]), null, null)
+                    : new MovieInfo(parts[1], null, null, null, null);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidPageRequestException("Invalid page token : " + pageToken);
+        }
     }
 
     public Mono<MovieInfo> getMovieInfosById(String id) {
-        return repository.findById(id);
+        return getEncodedMovieInfoById(id)
+                .map(EncodedMovieInfo::getMovieInfo);
+    }
+
+    public Mono<EncodedMovieInfo> getEncodedMovieInfoById(String id) {
+        return movieInfoCache.get(id, repository::findById);
+    }
+
+    public Flux<MovieInfo> getMovieInfosByIds(List<String> ids) {
+        return repository.findAllById(ids);
     }
 
     public Mono<MovieInfo> updateMovieInfo(MovieInfo updatedMovieInfo, String id) {
-        return repository.findById(id)
-                .flatMap(movieInfo -> {
-                    movieInfo.setName(updatedMovieInfo.getName());
-                    movieInfo.setYear(updatedMovieInfo.getYear());
-                    movieInfo.setCast(updatedMovieInfo.getCast());
-                    movieInfo.setRelease_date(updatedMovieInfo.getRelease_date());
-                    return repository.save(movieInfo);
+        return repository.updateFields(id, updatedMovieInfo, false)
+                .doOnSuccess(movieInfo -> movieInfoCache.invalidate(id));
+    }
+
+    public Mono<MovieInfo> patchMovieInfo(MovieInfo changes, String id) {
+        return repository.updateFields(id, changes, true)
+                .doOnSuccess(movieInfo -> movieInfoCache.invalidate(id));
+    }
+
+    /**
+     * The deleted movie info, or empty if there was none with {@code id}.
+     */
+    public Mono<MovieInfo> deleteMovieInfo(String id) {
+        return repository.findAndRemoveById(id)
+                .doOnNext(deleted -> movieInfoCache.invalidate(id));
+    }
+
+
+    /**
+     * Inserts, updates and deletes from the Mongo change stream, resuming after
+     * {@code resumeToken} when given and otherwise starting at {@code since}.
+     * Requires Mongo to run as a replica set.
+     */
+    public Flux<MovieInfoEvent> getMovieInfoChanges(String resumeToken, Instant since) {
+        var options = ChangeStreamOptions.builder()
+                .fullDocumentLookup(FullDocument.UPDATE_LOOKUP);
+        if (resumeToken != null) {
+            options.resumeAfter(new BsonDocument("_data", new BsonString(resumeToken)));
+        } else if (since != null) {
+            options.resumeAt(since);
+        }
+
+        return mongoTemplate.changeStream(mongoTemplate.getCollectionName(MovieInfo.class), options.build(), MovieInfo.class)
+                .filter(change -> toOperation(change.getOperationType()) != null)
+                .map(change -> {
+                    // deletes, and updates to documents deleted since, have no document to look up
+                    var movieInfo = change.getBody() != null
+                            ? change.getBody()
+                            : new MovieInfo(toId(change.getRaw().getDocumentKey().get("_id")), null, null, null, null);
+                    return new MovieInfoEvent(0, null, toOperation(change.getOperationType()),
+                            change.getResumeToken().asDocument().getString("_data").getValue(), movieInfo);
                 });
     }
 
-    public Mono<Void> deleteMovieInfo(String id) {
-        return repository.deleteById(id);
+    /**
+     * Changes after {@code resumeToken}, served from the event store the shared change feed fills
+     * whenever it still holds everything since that token. Otherwise a change stream of its own
+     * catches up until it reaches a change the store holds, then hands over to the store; at
+     * most maxCatchUpCursors of those are open at once and further resumes get a 503.
+     */
+    public Flux<MovieInfoEvent> resumeMovieInfoChanges(String resumeToken) {
+        return movieInfoEventStore.eventsAfter(resumeToken)
+                .switchIfEmpty(Flux.defer(() -> catchUp(resumeToken)));
+    }
+
+    private Flux<MovieInfoEvent> catchUp(String resumeToken) {
+        if (!catchUpCursors.tryAcquire()) {
+            return Flux.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Too many change stream resumes in progress, retry later"));
+        }
+        var lastResumeToken = new AtomicReference<>(resumeToken);
+        var caughtUp = new AtomicBoolean();
+        return getMovieInfoChanges(resumeToken, null)
+                .doOnNext(change -> lastResumeToken.set(change.getResumeToken()))
+                .takeUntil(change -> {
+                    caughtUp.set(movieInfoEventStore.canResumeAfter(change.getResumeToken()));
+                    return caughtUp.get();
+                })
+                .doFinally(signalType -> catchUpCursors.release())
+                .concatWith(Flux.defer(() -> caughtUp.get()
+                        ? resumeMovieInfoChanges(lastResumeToken.get())
+                        : Flux.empty()));
+    }
+
+    private static MovieInfoEvent.Operation toOperation(OperationType operationType) {
+        switch (operationType) {
+            case INSERT:
+                return MovieInfoEvent.Operation.INSERT;
+            case UPDATE:
+            case REPLACE:
+                return MovieInfoEvent.Operation.UPDATE;
+            case DELETE:
+                return MovieInfoEvent.Operation.DELETE;
+            default:
+                return null;
+        }
     }
 
-    public Flux<MovieInfo> getMovieInfoByYear(Integer year) {
-        return repository.findByYear(year);
+    private static String toId(BsonValue id) {
+        return id.isObjectId() ? id.asObjectId().getValue().toHexString() : id.asString().getValue();
     }
 }
@@ -0,0 +1,176 @@
+package com.reactivespring.cache;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.repository.MovieInfoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+        "spring.mongodb.embedded.version= latest",
+        "movieInfo.cache.enabled= true"})
+@AutoConfigureWebTestClient
+@DirtiesContext
+class MovieInfoCacheIntgTest {
+
+    public static final String MOVIEINFOS_URL = "/v1/movieinfos/";
+
+    @Autowired
+    private WebTestClient webClientTest;
+
+    @Autowired
+    private MovieInfoRepository movieInfoRepository;
+
+    @Autowired
+    private MovieInfoCache movieInfoCache;
+
+    @BeforeEach
+    void setUp() {
+        movieInfoRepository.save(new MovieInfo("abc", "Dark Knight Rises", 2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")))
+                .block();
+    }
+
+    @AfterEach
+    void tearDown() {
+        movieInfoRepository.deleteAll().block();
+        movieInfoCache.invalidate("abc");
+        movieInfoCache.invalidate("def");
+    }
+
+    @Test
+    void getMovieInfoById_servedFromCacheUntilUpdated() {
+        //given
+        assertEquals("Dark Knight Rises", getName("abc"));
+        // written behind the service's back, so only a cache miss would see it
+        movieInfoRepository.save(new MovieInfo("abc", "Changed Directly", 2012, List.of("Christian Bale"), LocalDate.parse("2012-07-20")))
+                .block();
+
+        //when
+        var cachedName = getName("abc");
+
+        //then
+        assertEquals("Dark Knight Rises", cachedName);
+        assertTrue(movieInfoCache.hitRate() > 0);
+
+        webClientTest
+                .put()
+                .uri(MOVIEINFOS_URL + "{id}", "abc")
+                .bodyValue(new MovieInfo(null, "Dark Knight Rises 1", 2013, List.of("Christian Bale"), LocalDate.parse("2012-07-20")))
+                .exchange()
+                .expectStatus()
+                .isOk();
+        assertEquals("Dark Knight Rises 1", getName("abc"));
+    }
+
+    @Test
+    void getMovieInfoById_cachesMissingIdUntilAdded() {
+        //given
+        getNotFound("def");
+        movieInfoRepository.save(new MovieInfo("def", "Inserted Directly", 2010, List.of("Leonardo DiCaprio"), LocalDate.parse("2010-07-16")))
+                .block();
+
+        //when
+        getNotFound("def");
+        movieInfoRepository.deleteById("def").block();
+        webClientTest
+                .post()
+                .uri(MOVIEINFOS_URL)
+                .bodyValue(new MovieInfo("def", "Inception", 2010, List.of("Leonardo DiCaprio"), LocalDate.parse("2010-07-16")))
+                .exchange()
+                .expectStatus()
+                .isCreated();
+
+        //then
+        assertEquals("Inception", getName("def"));
+    }
+
+    @Test
+    void getMovieInfoById_missingAfterDelete() {
+        //given
+        assertEquals("Dark Knight Rises", getName("abc"));
+
+        //when
+        webClientTest
+                .delete()
+                .uri(MOVIEINFOS_URL + "{id}", "abc")
+                .exchange()
+                .expectStatus()
+                .isNoContent();
+
+        //then
+        getNotFound("abc");
+    }
+
+    @Test
+    void getMovieInfoById_eTagFollowsContent() {
+        //given
+        var eTag = getETag("abc");
+        assertEquals(eTag, getETag("abc"));
+
+        //when
+        webClientTest
+                .patch()
+                .uri(MOVIEINFOS_URL + "{id}", "abc")
+                .bodyValue(new MovieInfo(null, null, 2013, null, null))
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        //then
+        assertNotEquals(eTag, getETag("abc"));
+    }
+
+    private String getETag(String id) {
+        var eTag = webClientTest
+                .get()
+                .uri(MOVIEINFOS_URL + "{id}", id)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(MovieInfo.class)
+                .getResponseHeaders()
+                .getETag();
+        assertNotNull(eTag);
+        return eTag;
+    }
+
+    private String getName(String id) {
+        var movieInfo = webClientTest
+                .get()
+                .uri(MOVIEINFOS_URL + "{id}", id)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(MovieInfo.class)
+                .returnResult()
+                .getResponseBody();
+        assertNotNull(movieInfo);
+        return movieInfo.getName();
+    }
+
+    private void getNotFound(String id) {
+        webClientTest
+                .get()
+                .uri(MOVIEINFOS_URL + "{id}", id)
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+    }
+}
@@ -0,0 +1,114 @@
+package com.reactivespring.controller;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.domain.MovieInfoEvent.Operation;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+        "spring.mongodb.embedded.version= latest",
+        "spring.mongodb.embedded.storage.repl-set-name= rs0",
+        "movieInfo.stream.changeStream.enabled= true"})
+@AutoConfigureWebTestClient(timeout = "10000")
+@DirtiesContext
+class MovieInfoChangeStreamIntgTest {
+
+    public static final String MOVIEINFOS_URL = "/v1/movieinfos/";
+
+    @Autowired
+    private WebTestClient webClientTest;
+
+    @Test
+    void stream_emitsInsertUpdateAndDeleteFromChangeStream(){
+        //given
+        var movieInfo = webClientTest
+                .post()
+                .uri(MOVIEINFOS_URL)
+                .bodyValue(new MovieInfo(null, "Inception", 2010, List.of("Leonardo DiCaprio"), LocalDate.parse("2010-07-16")))
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectBody(MovieInfo.class)
+                .returnResult()
+                .getResponseBody();
+        assertNotNull(movieInfo);
+        var movieInfoId = movieInfo.getMovieInfoId();
+        var insertToken = new AtomicReference<String>();
+
+        //when
+        var events = webClientTest
+                .get()
+                .uri(MOVIEINFOS_URL.concat("stream"))
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(MovieInfoEvent.class)
+                .getResponseBody()
+                .filter(event -> movieInfoId.equals(event.getMovieInfo().getMovieInfoId()));
+
+        //then
+        StepVerifier.create(events)
+                .assertNext(event -> {
+                    assertEquals(Operation.INSERT, event.getOperation());
+                    assertNotNull(event.getResumeToken());
+                    insertToken.set(event.getResumeToken());
+                })
+                .then(() -> updateYear(movieInfoId, movieInfo, 2011))
+                .assertNext(event -> {
+                    assertEquals(Operation.UPDATE, event.getOperation());
+                    assertEquals(2011, event.getMovieInfo().getYear());
+                })
+                .then(() -> webClientTest
+                        .delete()
+                        .uri(MOVIEINFOS_URL.concat(movieInfoId))
+                        .exchange()
+                        .expectStatus().isNoContent())
+                .assertNext(event -> assertEquals(Operation.DELETE, event.getOperation()))
+                .thenCancel()
+                .verify(Duration.ofSeconds(10));
+
+        // a resume token can be replayed against any instance
+        var resumed = webClientTest
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(MOVIEINFOS_URL.concat("stream"))
+                        .queryParam("resumeToken", insertToken.get())
+                        .build())
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(MovieInfoEvent.class)
+                .getResponseBody()
+                .map(MovieInfoEvent::getOperation);
+
+        StepVerifier.create(resumed)
+                .expectNext(Operation.UPDATE, Operation.DELETE)
+                .thenCancel()
+                .verify(Duration.ofSeconds(10));
+    }
+
+    private void updateYear(String movieInfoId, MovieInfo movieInfo, int year) {
+        movieInfo.setYear(year);
+        webClientTest
+                .put()
+                .uri(MOVIEINFOS_URL.concat(movieInfoId))
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus().isOk();
+    }
+}
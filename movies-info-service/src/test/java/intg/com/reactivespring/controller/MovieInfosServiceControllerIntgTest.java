@@ -1,6 +1,8 @@
 package com.reactivespring.controller;
 
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBulkResult;
+import com.reactivespring.domain.MovieInfoEvent;
 import com.reactivespring.repository.MovieInfoRepository;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -8,6 +10,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
@@ -18,6 +21,7 @@ import reactor.test.StepVerifier;
 import java.net.URI;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -94,6 +98,39 @@ class MovieInfosServiceControllerIntgTest {
                 });
     }
 
+    @Test
+    void addMovieInfosInBulk() {
+        //given
+        var body = "{\"name\":\"Inception\",\"year\":2010,\"cast\":[\"Leonardo DiCaprio\"],\"release_date\":\"2010-07-16\"}\n" +
+                "{\"year\":2014,\"cast\":[\"Matthew McConaughey\"]}\n" +
+                "{\"name\":\"Tenet\",\n" +
+                "{\"movieInfoId\":\"abc\",\"name\":\"Dark Knight Rises\",\"year\":2012,\"cast\":[\"Tom Hardy\"]}\n";
+
+        //when
+        var results = webClientTest
+                .post()
+                .uri(MOVIEINFOS_URL.concat("bulk"))
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(MovieInfoBulkResult.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        //then
+        assertNotNull(results);
+        assertEquals(List.of(MovieInfoBulkResult.Status.CREATED, MovieInfoBulkResult.Status.INVALID,
+                        MovieInfoBulkResult.Status.INVALID, MovieInfoBulkResult.Status.FAILED),
+                results.stream().map(MovieInfoBulkResult::getStatus).collect(Collectors.toList()));
+        assertNotNull(results.get(0).getMovieInfoId());
+        assertEquals("movieInfo.name is required", results.get(1).getError());
+        assertEquals(4L, movieInfoRepository.count().block());
+    }
+
     @Test
     void getAllMovieInfos(){
         webClientTest
@@ -124,6 +161,93 @@ class MovieInfosServiceControllerIntgTest {
                 .hasSize(1);
     }
 
+    @Test
+    void getAllMovieInfos_keysetPagesByYear(){
+        //given
+        var firstPage = webClientTest
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(MOVIEINFOS_URL)
+                        .queryParam("sort", "year")
+                        .queryParam("limit", 2)
+                        .build())
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(2)
+                .returnResult();
+
+        var nextPageToken = firstPage.getResponseHeaders().getFirst(MovieInfosServiceController.NEXT_PAGE_TOKEN_HEADER);
+        assertNotNull(nextPageToken);
+        assertEquals(List.of(2005, 2009), firstPage.getResponseBody().stream().map(MovieInfo::getYear).collect(Collectors.toList()));
+
+        //when
+        webClientTest
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(MOVIEINFOS_URL)
+                        .queryParam("sort", "year")
+                        .queryParam("limit", 2)
+                        .queryParam("after", nextPageToken)
+                        .build())
+                .exchange()
+        //then
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader().doesNotExist(MovieInfosServiceController.NEXT_PAGE_TOKEN_HEADER)
+                .expectBodyList(MovieInfo.class)
+                .value(movieInfos -> {
+                    assertEquals(1, movieInfos.size());
+                    assertEquals("Dark Knight Rises", movieInfos.get(0).getName());
+                });
+    }
+
+    @Test
+    void getAllMovieInfos_pageTokenForOtherSort(){
+        var nextPageToken = webClientTest
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(MOVIEINFOS_URL)
+                        .queryParam("limit", 1)
+                        .build())
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(MovieInfo.class)
+                .getResponseHeaders()
+                .getFirst(MovieInfosServiceController.NEXT_PAGE_TOKEN_HEADER);
+
+        webClientTest
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(MOVIEINFOS_URL)
+                        .queryParam("sort", "year")
+                        .queryParam("after", nextPageToken)
+                        .build())
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void getMovieInfosByIds(){
+        var savedIds = movieInfoRepository.findByYear(2005)
+                .map(MovieInfo::getMovieInfoId)
+                .collectList()
+                .block();
+        var uri = UriComponentsBuilder
+                .fromUriString(MOVIEINFOS_URL)
+                .queryParam("ids", "abc", savedIds.get(0), "def")
+                .buildAndExpand()
+                .toUri();
+
+        webClientTest
+                .get()
+                .uri(uri)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(2);
+    }
+
     @Test
     void getMovieInfosById(){
         var id = "abc";
@@ -142,6 +266,33 @@ class MovieInfosServiceControllerIntgTest {
 //                });
     }
 
+    @Test
+    void getMovieInfosById_notModified(){
+        var id = "abc";
+        var eTag = webClientTest
+                .get()
+                .uri(MOVIEINFOS_URL + "{id}", id)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(MovieInfo.class)
+                .getResponseHeaders()
+                .getETag();
+        assertNotNull(eTag);
+
+        webClientTest
+                .get()
+                .uri(MOVIEINFOS_URL + "{id}", id)
+                .ifNoneMatch(eTag)
+                .exchange()
+                .expectStatus()
+                .isNotModified()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, eTag)
+                .expectBody()
+                .isEmpty();
+    }
+
     @Test
     void getMovieInfosById_NotFound(){
         var id = "def";
@@ -168,6 +319,28 @@ class MovieInfosServiceControllerIntgTest {
                 .jsonPath("$.name").isEqualTo("Dark Knight Rises Reloaded");
     }
 
+    @Test
+    void patchMovieInfo() {
+        var changes = new MovieInfo(null, null, 2013, null, null);
+        var id = "abc";
+
+        webClientTest
+                .patch()
+                .uri(MOVIEINFOS_URL + "{id}", id)
+                .bodyValue(changes)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(MovieInfo.class)
+                .consumeWith(movieInfoEntityExchangeResult -> {
+                    var patchedMovieInfo = movieInfoEntityExchangeResult.getResponseBody();
+                    assertNotNull(patchedMovieInfo);
+                    assertEquals(2013, patchedMovieInfo.getYear());
+                    assertEquals("Dark Knight Rises", patchedMovieInfo.getName());
+                    assertEquals(List.of("Christian Bale", "Tom Hardy"), patchedMovieInfo.getCast());
+                });
+    }
+
     @Test
     void updateMovieInfo_notFound() {
         var movieInfo = new MovieInfo("abc", "Dark Knight Rises Reloaded", 2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
@@ -233,4 +406,99 @@ class MovieInfosServiceControllerIntgTest {
                 .thenCancel()
                 .verify();
     }
-}
\ No newline at end of file
+
+    @Test
+    void stream_resumesAfterOffset(){
+        //given
+        var first = postMovieInfo(new MovieInfo(null, "Inception", 2010, List.of("Leonardo DiCaprio"), LocalDate.parse("2010-07-16")));
+        var second = postMovieInfo(new MovieInfo(null, "Interstellar", 2014, List.of("Matthew McConaughey"), LocalDate.parse("2014-11-07")));
+
+        var firstOffset = webClientTest
+                .get()
+                .uri(MOVIEINFOS_URL.concat("stream"))
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(MovieInfoEvent.class)
+                .getResponseBody()
+                .filter(event -> first.getMovieInfoId().equals(event.getMovieInfo().getMovieInfoId()))
+                .blockFirst()
+                .getOffset();
+
+        //when
+        var fromOffset = webClientTest
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(MOVIEINFOS_URL.concat("stream"))
+                        .queryParam("fromOffset", firstOffset)
+                        .build())
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(MovieInfoEvent.class)
+                .getResponseBody();
+
+        var lastEventId = webClientTest
+                .get()
+                .uri(MOVIEINFOS_URL.concat("stream"))
+                .header("Last-Event-ID", String.valueOf(firstOffset))
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(MovieInfoEvent.class)
+                .getResponseBody();
+
+        //then
+        StepVerifier.create(fromOffset)
+                .assertNext(event -> {
+                    assertEquals(firstOffset + 1, event.getOffset());
+                    assertEquals(second.getMovieInfoId(), event.getMovieInfo().getMovieInfoId());
+                })
+                .thenCancel()
+                .verify();
+
+        StepVerifier.create(lastEventId)
+                .assertNext(event -> assertEquals(second.getMovieInfoId(), event.getMovieInfo().getMovieInfoId()))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void stream_batched(){
+        //given
+        var first = postMovieInfo(new MovieInfo(null, "Inception", 2010, List.of("Leonardo DiCaprio"), LocalDate.parse("2010-07-16")));
+        var second = postMovieInfo(new MovieInfo(null, "Interstellar", 2014, List.of("Matthew McConaughey"), LocalDate.parse("2014-11-07")));
+
+        //when
+        var events = webClientTest
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(MOVIEINFOS_URL.concat("stream"))
+                        .queryParam("batch", 50)
+                        .queryParam("maxDelayMs", 20)
+                        .build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(MovieInfoEvent.class)
+                .getResponseBody()
+                .filter(event -> event.getMovieInfo().getMovieInfoId().equals(first.getMovieInfoId())
+                        || event.getMovieInfo().getMovieInfoId().equals(second.getMovieInfoId()));
+
+        //then
+        // fewer than a batch of events, so they only arrive once maxDelayMs has passed
+        StepVerifier.create(events)
+                .assertNext(event -> assertEquals(first.getMovieInfoId(), event.getMovieInfo().getMovieInfoId()))
+                .assertNext(event -> assertEquals(second.getMovieInfoId(), event.getMovieInfo().getMovieInfoId()))
+                .thenCancel()
+                .verify();
+    }
+
+    private MovieInfo postMovieInfo(MovieInfo movieInfo) {
+        return webClientTest
+                .post()
+                .uri(MOVIEINFOS_URL)
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectBody(MovieInfo.class)
+                .returnResult()
+                .getResponseBody();
+    }
+}
@@ -0,0 +1,94 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoSort;
+import com.reactivespring.util.QueryPlanRecorder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Explains the finds each MovieInfoRepository method issues and fails on a collection scan.
+ */
+@DataMongoTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+        "spring.mongodb.embedded.version= latest"})
+@Import(QueryPlanRecorder.Recording.class)
+@DirtiesContext
+class MovieInfoQueryPlanIntgTest {
+
+    @Autowired
+    MovieInfoRepository movieInfoRepository;
+
+    @Autowired
+    ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    QueryPlanRecorder queryPlanRecorder;
+
+    List<MovieInfo> movies;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        movies = movieInfoRepository.saveAll(List.of(
+                        new MovieInfo(null, "Batman Begins", 2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15")),
+                        new MovieInfo(null, "The Dark Knight", 2009, List.of("Christian Bale"), LocalDate.parse("2007-06-18"))))
+                .collectList()
+                .block();
+
+        // indexes are created asynchronously when the mapping context starts up
+        for (int attempt = 0; attempt < 50 && !indexNames().containsAll(List.of("name", "year_release_date", "year_id")); attempt++) {
+            Thread.sleep(100);
+        }
+    }
+
+    @Test
+    void findByYear(){
+        queryPlanRecorder.assertIndexed(mongoTemplate, movieInfoRepository.findByYear(2005));
+    }
+
+    @Test
+    void findByName(){
+        queryPlanRecorder.assertIndexed(mongoTemplate, movieInfoRepository.findByName("Batman Begins"));
+    }
+
+    @Test
+    void findAllById(){
+        queryPlanRecorder.assertIndexed(mongoTemplate, movieInfoRepository.findAllById(
+                List.of(movies.get(0).getMovieInfoId(), movies.get(1).getMovieInfoId())));
+    }
+
+    @Test
+    void findPage_byId(){
+        queryPlanRecorder.assertIndexed(mongoTemplate, movieInfoRepository.findPage(null, MovieInfoSort.ID, movies.get(0), 10));
+    }
+
+    @Test
+    void findPage_byYear(){
+        queryPlanRecorder.assertIndexed(mongoTemplate, movieInfoRepository.findPage(null, MovieInfoSort.YEAR, movies.get(0), 10));
+    }
+
+    @Test
+    void findPage_withinYear(){
+        queryPlanRecorder.assertIndexed(mongoTemplate, movieInfoRepository.findPage(2005, MovieInfoSort.YEAR, movies.get(0), 10));
+    }
+
+    private List<String> indexNames() {
+        return mongoTemplate.indexOps(MovieInfo.class)
+                .getIndexInfo()
+                .map(IndexInfo::getName)
+                .collectList()
+                .block();
+    }
+}
@@ -1,6 +1,7 @@
 package com.reactivespring.repository;
 
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoSort;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,10 +13,14 @@ import org.springframework.test.context.TestPropertySource;
 import reactor.test.StepVerifier;
 
 import java.time.LocalDate;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @DataMongoTest
 @ActiveProfiles("test")
@@ -132,6 +137,52 @@ class MovieInfoRepositoryIntgTest {
                 .expectNextCount(2)
                 .verifyComplete();
     }
+
+    @Test
+    void findPage_byId_pagesAcrossStringAndObjectIds(){
+        //given
+        movieInfoRepository.save(new MovieInfo("xyz", "Inception", 2010, List.of("Leonardo DiCaprio"), LocalDate.parse("2010-07-16"))).block();
+
+        //when
+        var paged = pageThrough(null, MovieInfoSort.ID);
+
+        //then
+        assertEquals(allIds(), paged);
+    }
+
+    @Test
+    void findPage_byYear_pagesAcrossStringAndObjectIdsWithinAYear(){
+        //given
+        movieInfoRepository.save(new MovieInfo("xyz", "The Prestige", 2005, List.of("Christian Bale"), LocalDate.parse("2006-10-20"))).block();
+
+        //when
+        var paged = pageThrough(null, MovieInfoSort.YEAR);
+        var pagedWithinYear = pageThrough(2005, MovieInfoSort.YEAR);
+
+        //then
+        assertEquals(allIds(), paged);
+        assertEquals(movieInfoRepository.findByYear(2005).map(MovieInfo::getMovieInfoId).collect(Collectors.toSet()).block(),
+                pagedWithinYear);
+    }
+
+    // one movie info per page, so every id is a cursor once
+    private Set<String> pageThrough(Integer year, MovieInfoSort sort) {
+        var ids = new LinkedHashSet<String>();
+        MovieInfo after = null;
+        while (true) {
+            var page = movieInfoRepository.findPage(year, sort, after, 1).collectList().block();
+            if (page.isEmpty()) {
+                return ids;
+            }
+            after = page.get(0);
+            assertTrue(ids.add(after.getMovieInfoId()), "page repeated " + after.getMovieInfoId());
+        }
+    }
+
+    private Set<String> allIds() {
+        return movieInfoRepository.findAll().map(MovieInfo::getMovieInfoId).collect(Collectors.toSet()).block();
+    }
+
 //    @AfterAll
 //    static void tearDown() {
 //        movieInfoRepository.deleteAll().block();
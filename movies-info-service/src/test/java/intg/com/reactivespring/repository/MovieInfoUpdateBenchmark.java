@@ -0,0 +1,101 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.MovieInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Compares read-modify-write updates against single findAndModify updates with concurrent
+ * writers on the same documents. Run with {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+@DataMongoTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+        "spring.mongodb.embedded.version= latest"})
+@DirtiesContext
+class MovieInfoUpdateBenchmark {
+
+    private static final int DOCUMENTS = 10;
+    private static final int WRITERS = 32;
+    private static final int UPDATES = 5_000;
+
+    @Autowired
+    MovieInfoRepository movieInfoRepository;
+
+    private List<String> ids;
+
+    @BeforeEach
+    void setUp() {
+        movieInfoRepository.deleteAll().block();
+        ids = Flux.range(0, DOCUMENTS)
+                .map(i -> new MovieInfo(null, "Movie " + i, 2000, List.of("Christian Bale"), LocalDate.parse("2000-01-01")))
+                .flatMap(movieInfoRepository::save)
+                .map(MovieInfo::getMovieInfoId)
+                .collectList()
+                .block();
+    }
+
+    @Test
+    void updateLatency() {
+        // warm up both paths before measuring
+        run(this::readModifyWrite, UPDATES / 5);
+        run(this::findAndModify, UPDATES / 5);
+
+        report("findById + save", run(this::readModifyWrite, UPDATES));
+        report("findAndModify", run(this::findAndModify, UPDATES));
+    }
+
+    private Mono<MovieInfo> readModifyWrite(MovieInfo changes) {
+        return movieInfoRepository.findById(changes.getMovieInfoId())
+                .flatMap(movieInfo -> {
+                    movieInfo.setYear(changes.getYear());
+                    return movieInfoRepository.save(movieInfo);
+                });
+    }
+
+    private Mono<MovieInfo> findAndModify(MovieInfo changes) {
+        return movieInfoRepository.updateFields(changes.getMovieInfoId(), changes, true);
+    }
+
+    private long[] run(Function<MovieInfo, Mono<MovieInfo>> update, int updates) {
+        return Flux.range(0, updates)
+                .flatMap(i -> {
+                    var changes = new MovieInfo(ids.get(i % DOCUMENTS), null, 2000 + i % 20, null, null);
+                    return Mono.defer(() -> {
+                        var start = System.nanoTime();
+                        return update.apply(changes).map(updated -> System.nanoTime() - start);
+                    });
+                }, WRITERS)
+                .collectList()
+                .map(latencies -> latencies.stream().mapToLong(Long::longValue).sorted().toArray())
+                .block();
+    }
+
+    private static void report(String name, long[] sortedNanos) {
+        System.out.printf("%-16s n=%d p50=%s p99=%s max=%s mean=%s%n", name, sortedNanos.length,
+                Duration.ofNanos(percentile(sortedNanos, 50)),
+                Duration.ofNanos(percentile(sortedNanos, 99)),
+                Duration.ofNanos(sortedNanos[sortedNanos.length - 1]),
+                Duration.ofNanos((long) Arrays.stream(sortedNanos).average().orElse(0)));
+    }
+
+    private static long percentile(long[] sortedNanos, int percentile) {
+        var index = (int) Math.ceil(percentile / 100.0 * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(index, 0)];
+    }
+}
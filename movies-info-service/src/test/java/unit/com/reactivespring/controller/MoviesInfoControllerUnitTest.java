@@ -1,12 +1,22 @@
 package com.reactivespring.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.domain.EncodedMovieInfo;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.domain.MovieInfoPage;
+import com.reactivespring.domain.MovieInfoSort;
+import com.reactivespring.service.MovieInfoBulkLoader;
+import com.reactivespring.service.MovieInfoEventStore;
 import com.reactivespring.service.MoviesInfoService;
+import com.reactivespring.util.NdjsonStreamWriter;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
@@ -14,10 +24,17 @@ import reactor.core.publisher.Mono;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @WebFluxTest(controllers = MovieInfosServiceController.class)
@@ -27,9 +44,21 @@ public class MoviesInfoControllerUnitTest {
     @Autowired
     private WebTestClient webTestClient;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @MockBean
     private MoviesInfoService moviesInfoServiceMock;
 
+    @MockBean
+    private MovieInfoEventStore movieInfoEventStoreMock;
+
+    @MockBean
+    private MovieInfoBulkLoader movieInfoBulkLoaderMock;
+
+    @MockBean
+    private NdjsonStreamWriter movieInfoStreamWriterMock;
+
     public static final String MOVIEINFOS_URL = "/v1/movieinfos/";
 
     @Test
@@ -39,7 +68,8 @@ public class MoviesInfoControllerUnitTest {
                 new MovieInfo(null, "The Dark Knight", 2009, List.of("Christian Bale"), LocalDate.parse("2007-06-18")),
                 new MovieInfo("abc", "Dark Knight Rises", 2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")));
 
-        when(moviesInfoServiceMock.getAllMovieInfos()).thenReturn(Flux.fromIterable(movies));
+        when(moviesInfoServiceMock.getMovieInfosPage(isNull(), eq(MovieInfoSort.ID), isNull(), eq(100)))
+                .thenReturn(Mono.just(new MovieInfoPage(movies, null)));
 
 
         webTestClient
@@ -53,12 +83,13 @@ public class MoviesInfoControllerUnitTest {
     }
 
     @Test
-    void getMovieInfoById(){
+    void getMovieInfoById() throws JsonProcessingException {
         var id = "abc";
 
         var movie = new MovieInfo("abc", "Dark Knight Rises", 2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
 
-        when(moviesInfoServiceMock.getMovieInfosById(id)).thenReturn(Mono.just(movie));
+        var encodedMovie = EncodedMovieInfo.encode(objectMapper, movie);
+        when(moviesInfoServiceMock.getEncodedMovieInfoById(id)).thenReturn(Mono.just(encodedMovie));
 
         webTestClient
                 .get()
@@ -66,6 +97,8 @@ public class MoviesInfoControllerUnitTest {
                 .exchange()
                 .expectStatus()
                 .is2xxSuccessful()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, encodedMovie.getETag())
                 .expectBody()
                 .jsonPath("$.name").isEqualTo("Dark Knight Rises");
 
@@ -115,10 +148,51 @@ public class MoviesInfoControllerUnitTest {
                 .jsonPath("$.name").isEqualTo(updatedMovieInfo.getName());
     }
 
+    @Test
+    void getAllMovieInfos_tooManyIds() {
+        var ids = IntStream.rangeClosed(0, MovieInfosServiceController.MAX_IDS)
+                .mapToObj(String::valueOf)
+                .collect(Collectors.joining(","));
+
+        webTestClient
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(MOVIEINFOS_URL).queryParam("ids", ids).build())
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void getAllMovieInfos_idsWithPagingParameters() {
+        webTestClient
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(MOVIEINFOS_URL).queryParam("ids", "abc,def").queryParam("limit", 1).build())
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
     @Test
     void deleteMovieInfo() {
         var id = "abc";
 
+        when(moviesInfoServiceMock.deleteMovieInfo(isA(String.class)))
+                .thenReturn(Mono.just(new MovieInfo(id, "Dark Knight Rises", 2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"))));
+
+        webTestClient
+                .delete()
+                .uri(MOVIEINFOS_URL + "{id}", id)
+                .exchange()
+                .expectStatus()
+                .isNoContent();
+
+        verify(movieInfoEventStoreMock).publish(eq(MovieInfoEvent.Operation.DELETE), any(MovieInfo.class), isNull());
+    }
+
+    @Test
+    void deleteMovieInfo_notFound_publishesNothing() {
+        var id = "abc";
+
         when(moviesInfoServiceMock.deleteMovieInfo(isA(String.class))).thenReturn(Mono.empty());
 
         webTestClient
@@ -127,5 +201,7 @@ public class MoviesInfoControllerUnitTest {
                 .exchange()
                 .expectStatus()
                 .isNoContent();
+
+        verify(movieInfoEventStoreMock, never()).publish(any(), any(), any());
     }
 }
@@ -0,0 +1,67 @@
+package com.reactivespring.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.reactivespring.cache.MovieInfoCache;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBulkResult;
+import com.reactivespring.repository.MovieInfoRepository;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import javax.validation.Validation;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MovieInfoBulkLoaderTest {
+
+    private final MovieInfoRepository repository = mock(MovieInfoRepository.class);
+
+    private final MovieInfoBulkLoader loader = new MovieInfoBulkLoader(repository, mock(MovieInfoCache.class),
+            new ObjectMapper().registerModule(new JavaTimeModule()),
+            Validation.buildDefaultValidatorFactory().getValidator(), 2, Duration.ofMillis(1));
+
+    @Test
+    void load_slowWriterHoldsBackLinesInsteadOfOverflowing() {
+        // each insert outlasts many batch timeouts, and there are more batches than concatMap prefetches
+        var inserted = new AtomicInteger();
+        when(repository.insertAllUnordered(anyList())).thenAnswer(invocation -> {
+            List<MovieInfo> movieInfos = invocation.getArgument(0);
+            return Mono.delay(Duration.ofMillis(20))
+                    .doOnNext(tick -> inserted.addAndGet(movieInfos.size()))
+                    .thenReturn(Map.<Integer, String>of());
+        });
+        var lines = Flux.range(0, 100)
+                .delayElements(Duration.ofMillis(1))
+                .map(i -> "{\"movieInfoId\":\"" + i + "\",\"name\":\"Movie " + i + "\",\"year\":2005,\"cast\":[\"Christian Bale\"]}");
+
+        StepVerifier.create(loader.load(lines, movieInfo -> {}))
+                .thenConsumeWhile(result -> result.getStatus() == MovieInfoBulkResult.Status.CREATED)
+                .expectComplete()
+                .verify(Duration.ofSeconds(30));
+
+        assertEquals(100, inserted.get());
+    }
+
+    @Test
+    void load_nullLineIsReportedInvalid() {
+        when(repository.insertAllUnordered(anyList())).thenReturn(Mono.just(Map.of()));
+        var lines = Flux.just(
+                "{\"movieInfoId\":\"1\",\"name\":\"Batman Begins\",\"year\":2005,\"cast\":[\"Christian Bale\"]}",
+                "null",
+                "{\"movieInfoId\":\"2\",\"name\":\"The Dark Knight\",\"year\":2008,\"cast\":[\"Christian Bale\"]}");
+
+        StepVerifier.create(loader.load(lines, movieInfo -> {}).map(MovieInfoBulkResult::getStatus))
+                .expectNext(MovieInfoBulkResult.Status.CREATED, MovieInfoBulkResult.Status.INVALID, MovieInfoBulkResult.Status.CREATED)
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,161 @@
+package com.reactivespring.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.util.SlowConsumerBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+import static com.reactivespring.domain.MovieInfoEvent.Operation.INSERT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MovieInfoEventStoreTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final Clock clock = mock(Clock.class);
+    private final Instant now = Instant.parse("2022-01-01T00:00:00Z");
+
+    private MovieInfoEventStore store(int maxEvents, Duration maxAge, boolean compact) {
+        when(clock.instant()).thenReturn(now);
+        var meterRegistry = new SimpleMeterRegistry();
+        return new MovieInfoEventStore(objectMapper, meterRegistry, clock, maxEvents, Long.MAX_VALUE, maxAge, compact,
+                new SlowConsumerBuffer("movieinfo.stream", SlowConsumerBuffer.Policy.DISCONNECT, 16, meterRegistry));
+    }
+
+    private MovieInfo movieInfo(String id, String name) {
+        return new MovieInfo(id, name, 2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15"));
+    }
+
+    @Test
+    void publish_compactsToLatestPerMovieInfoId(){
+        //given
+        var store = store(100, Duration.ofHours(1), true);
+
+        //when
+        store.publish(INSERT, movieInfo("1", "Batman Begins"), null);
+        store.publish(INSERT, movieInfo("2", "The Dark Knight"), null);
+        store.publish(INSERT, movieInfo("1", "Batman Begins (Director's Cut)"), null);
+
+        //then
+        assertEquals(2, store.size());
+        assertTrue(store.bytes() > 0);
+        StepVerifier.create(store.eventsAfter(0).map(MovieInfoEvent::getOffset).take(2))
+                .expectNext(2L, 3L)
+                .verifyComplete();
+    }
+
+    @Test
+    void publish_boundedByCountAndAge(){
+        //given
+        var store = store(2, Duration.ofMinutes(10), false);
+
+        //when
+        store.publish(INSERT, movieInfo("1", "Batman Begins"), null);
+        store.publish(INSERT, movieInfo("2", "The Dark Knight"), null);
+        store.publish(INSERT, movieInfo("3", "Dark Knight Rises"), null);
+
+        //then
+        assertEquals(2, store.size());
+
+        when(clock.instant()).thenReturn(now.plus(Duration.ofMinutes(11)));
+        store.publish(INSERT, movieInfo("4", "Inception"), null);
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void eventsAfter_snapshotThenLive(){
+        //given
+        var store = store(100, Duration.ofHours(1), true);
+        store.publish(INSERT, movieInfo("1", "Batman Begins"), null);
+        store.publish(INSERT, movieInfo("2", "The Dark Knight"), null);
+
+        //then
+        StepVerifier.create(store.eventsAfter(1).map(event -> event.getMovieInfo().getName()))
+                .expectNext("The Dark Knight")
+                .then(() -> store.publish(INSERT, movieInfo("3", "Dark Knight Rises"), null))
+                .expectNext("Dark Knight Rises")
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void eventsAfter_offsetFromBeforeRestartStartsOver(){
+        //given
+        var store = store(100, Duration.ofHours(1), true);
+        store.publish(INSERT, movieInfo("1", "Batman Begins"), null);
+
+        //then
+        StepVerifier.create(store.eventsAfter(42).map(MovieInfoEvent::getOffset))
+                .expectNext(1L)
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void eventsAfter_offsetFromAnotherEpochStartsOver(){
+        //given
+        var store = store(100, Duration.ofHours(1), true);
+        store.publish(INSERT, movieInfo("1", "Batman Begins"), null);
+        store.publish(INSERT, movieInfo("2", "The Dark Knight"), null);
+        store.publish(INSERT, movieInfo("3", "Dark Knight Rises"), null);
+
+        //then
+        StepVerifier.create(store.eventsAfter(1, store.epoch()).map(MovieInfoEvent::getOffset))
+                .expectNext(2L, 3L)
+                .thenCancel()
+                .verify();
+        // an earlier run had got further than this one before restarting
+        StepVerifier.create(store.eventsAfter(1, "previous-run").map(MovieInfoEvent::getOffset))
+                .expectNext(1L, 2L, 3L)
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void eventsAfter_resumeTokenReplaysChangesSinceCompactedEvent(){
+        //given
+        var store = store(100, Duration.ofHours(1), true);
+        store.publish(INSERT, movieInfo("1", "Batman Begins"), "token-1");
+        store.publish(INSERT, movieInfo("1", "Batman Begins (Director's Cut)"), "token-2");
+        store.publish(INSERT, movieInfo("2", "The Dark Knight"), "token-3");
+
+        //then
+        assertTrue(store.canResumeAfter("token-1"));
+        StepVerifier.create(store.eventsAfter("token-1").map(MovieInfoEvent::getOffset))
+                .expectNext(2L, 3L)
+                .thenCancel()
+                .verify();
+        StepVerifier.create(store.eventsAfter("unknown"))
+                .verifyComplete();
+    }
+
+    @Test
+    void eventsAfter_resumeTokenBeforeEvictedEventIsNotReplayed(){
+        //given
+        var store = store(2, Duration.ofHours(1), false);
+        store.publish(INSERT, movieInfo("1", "Batman Begins"), "token-1");
+        store.publish(INSERT, movieInfo("2", "The Dark Knight"), "token-2");
+
+        //when
+        store.publish(INSERT, movieInfo("3", "Dark Knight Rises"), "token-3");
+
+        //then
+        assertFalse(store.canResumeAfter("token-1"));
+        assertTrue(store.canResumeAfter("token-2"));
+        StepVerifier.create(store.eventsAfter("token-1"))
+                .verifyComplete();
+    }
+}
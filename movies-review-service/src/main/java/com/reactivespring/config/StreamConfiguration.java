@@ -0,0 +1,33 @@
+package com.reactivespring.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.util.NdjsonStreamWriter;
+import com.reactivespring.util.SlowConsumerBuffer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class StreamConfiguration {
+
+    @Bean
+    public SlowConsumerBuffer reviewsStreamBuffer(
+            MeterRegistry meterRegistry,
+            @Value("${reviews.stream.subscriberBufferSize:256}") int subscriberBufferSize,
+            @Value("${reviews.stream.slowConsumerPolicy:drop-oldest}") SlowConsumerBuffer.Policy slowConsumerPolicy) {
+        return new SlowConsumerBuffer("reviews.stream", slowConsumerPolicy, subscriberBufferSize, meterRegistry);
+    }
+
+    @Bean
+    public NdjsonStreamWriter reviewsStreamWriter(
+            ObjectMapper objectMapper,
+            @Value("${reviews.stream.heartbeatInterval:15s}") Duration heartbeatInterval,
+            @Value("${reviews.stream.batch.maxSize:500}") int maxBatchSize,
+            @Value("${reviews.stream.batch.defaultMaxDelay:20ms}") Duration defaultMaxDelay,
+            @Value("${reviews.stream.batch.maxDelayLimit:1s}") Duration maxDelayLimit) {
+        return new NdjsonStreamWriter(objectMapper, heartbeatInterval, maxBatchSize, defaultMaxDelay, maxDelayLimit);
+    }
+}
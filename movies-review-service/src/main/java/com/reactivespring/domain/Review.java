@@ -5,6 +5,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.validation.constraints.Min;
@@ -19,6 +20,7 @@ public class Review {
     @Id
     private String reviewId;
     @NotNull(message = "rating.movieInfoId : must not be null")
+    @Indexed
     private Long movieInfoId;
     private String comment;
     @Min(value = 0L, message = "rating.negative : please pass a non-negative value")
@@ -0,0 +1,49 @@
+package com.reactivespring.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Rating statistics of one movie, kept up to date as its reviews are added, updated and deleted.
+ * {@code ratingHistogram} counts ratings by their whole part, so "8" covers 8.0 up to 8.9.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document
+public class ReviewStats {
+
+    @Id
+    private Long movieInfoId;
+    private long reviewCount;
+    // reviews without a rating count as reviews but not towards the rating figures
+    private long ratingCount;
+    private double ratingSum;
+    private Double minRating;
+    private Double maxRating;
+    private Map<String, Long> ratingHistogram = new HashMap<>();
+    // bumped by every write, so a rewrite computed from a read can check nothing changed since
+    @JsonIgnore
+    private long version;
+
+    public static ReviewStats empty(Long movieInfoId) {
+        return new ReviewStats(movieInfoId, 0, 0, 0, null, null, new HashMap<>(), 0);
+    }
+
+    @Transient
+    public Double getAverageRating() {
+        return ratingCount == 0 ? null : ratingSum / ratingCount;
+    }
+
+    public static String histogramBucket(double rating) {
+        return String.valueOf((long) Math.floor(rating));
+    }
+}
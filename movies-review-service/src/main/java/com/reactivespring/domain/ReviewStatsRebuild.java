@@ -0,0 +1,24 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * A movie whose stats may have drifted from its reviews, because a stats update failed after
+ * the review write it belonged to, waiting to have its stats rebuilt from the reviews.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document
+public class ReviewStatsRebuild {
+
+    @Id
+    private Long movieInfoId;
+    private Instant markedAt;
+}
@@ -0,0 +1,14 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A review as it was before and after an update, for callers that track changes of the rating.
+ */
+@Data
+@AllArgsConstructor
+public class ReviewUpdate {
+    private Review previous;
+    private Review updated;
+}
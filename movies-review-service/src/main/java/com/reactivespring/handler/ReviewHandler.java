@@ -1,15 +1,24 @@
 package com.reactivespring.handler;
 
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
 import com.reactivespring.exception.ReviewDataException;
 import com.reactivespring.exception.ReviewNotFoundException;
 import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.repository.ReviewStatsRepository;
+import com.reactivespring.util.KeyedBroadcaster;
+import com.reactivespring.util.NdjsonStreamWriter;
+import com.reactivespring.util.SlowConsumerBuffer;
 import lombok.AllArgsConstructor;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ReactiveHttpOutputMessage;
 import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserter;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
 import reactor.core.publisher.Flux;
@@ -18,27 +27,46 @@ import reactor.core.publisher.Sinks;
 
 import javax.validation.ConstraintViolation;
 import javax.validation.Validator;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 
 @Component
+@Slf4j
 @RequiredArgsConstructor
 public class ReviewHandler {
 
+    // the movies service sends at most this many ids per request
+    private static final int MAX_MOVIE_INFO_IDS = 100;
+
     @Autowired
     private Validator validator;
 
     private final ReviewReactiveRepository repository;
 
+    private final ReviewStatsRepository reviewStatsRepository;
+
+    private final SlowConsumerBuffer reviewsStreamBuffer;
+
+    private final NdjsonStreamWriter reviewsStreamWriter;
+
     private final Sinks.Many<Review> reviewsSink = Sinks.many().replay().latest();
 
+    private final KeyedBroadcaster<Long, Review> reviewsByMovieInfoId = new KeyedBroadcaster<>();
+
 
 
     public Mono<ServerResponse> addReview(ServerRequest request){
         return request.bodyToMono(Review.class)
                 .doOnNext(this::validate)
                 .flatMap(repository::save)
-                .doOnNext(reviewsSink::tryEmitNext)
+                .flatMap(savedReview -> recordStats(reviewStatsRepository.recordAdded(savedReview), savedReview))
+                .doOnNext(savedReview -> {
+                    reviewsSink.tryEmitNext(savedReview);
+                    reviewsByMovieInfoId.publish(savedReview.getMovieInfoId(), savedReview);
+                })
                 .flatMap(ServerResponse.status(HttpStatus.CREATED)::bodyValue);
     }
 
@@ -61,7 +89,7 @@ public class ReviewHandler {
         var movieInfoId = request.queryParam("movieInfoId");
 
         if(movieInfoId.isPresent()){
-            var reviewsFlux = repository.findReviewByMovieInfoId(Long.valueOf(movieInfoId.get()));
+            var reviewsFlux = repository.findReviewByMovieInfoId(parseMovieInfoId(movieInfoId.get()));
             return ServerResponse.ok().body(reviewsFlux, Review.class);
         }else {
             var reviewsFlux = repository.findAll();
@@ -70,38 +98,129 @@ public class ReviewHandler {
 
     }
 
+    public Mono<ServerResponse> getReviewsByMovieInfoIds(ServerRequest request) {
+        var movieInfoIds = parseMovieInfoIds(request);
+
+        // grouped by movie, so a caller can hand on each movie's reviews as soon as the next one starts
+        var reviewsFlux = repository.findReviewByMovieInfoIdIn(movieInfoIds, Sort.by("movieInfoId"));
+        return ServerResponse.ok().body(reviewsFlux, Review.class);
+    }
+
+    private static Long parseMovieInfoId(String movieInfoId) {
+        return parseNumber("movieInfoId", movieInfoId, Long::valueOf);
+    }
+
+    private static <T> T parseNumber(String name, String value, Function<String, T> parser) {
+        try {
+            return parser.apply(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ReviewDataException(name + " must be a number : " + value);
+        }
+    }
+
+    private static List<Long> parseMovieInfoIds(ServerRequest request) {
+        var movieInfoIds = request.queryParams().getOrDefault("movieInfoIds", List.of())
+                .stream()
+                .flatMap(ids -> Arrays.stream(ids.split(",")))
+                .map(String::trim)
+                .filter(id -> !id.isEmpty())
+                .map(ReviewHandler::parseMovieInfoId)
+                .distinct()
+                .collect(Collectors.toList());
+
+        if (movieInfoIds.size() > MAX_MOVIE_INFO_IDS) {
+            throw new ReviewDataException("At most " + MAX_MOVIE_INFO_IDS + " movieInfoIds per request");
+        }
+        return movieInfoIds;
+    }
+
     public Mono<ServerResponse> updateReview(ServerRequest request) {
-        var reviewId = request.pathVariable("id");
-        var existingReview = repository.findById(reviewId);
-//                .switchIfEmpty(Mono.error(new ReviewNotFoundException("Review not found for given Review id " + reviewId)));
+        return updateReview(request, false);
+    }
 
+    public Mono<ServerResponse> patchReview(ServerRequest request) {
+        return updateReview(request, true);
+    }
 
-        return existingReview.flatMap(review -> request.bodyToMono(Review.class)
-                .map(reqReview -> {
-                    review.setComment(reqReview.getComment());
-                    review.setRating(reqReview.getRating());
-                    return review;
-                })
-                .flatMap(repository::save)
+    private Mono<ServerResponse> updateReview(ServerRequest request, boolean partial) {
+        var reviewId = request.pathVariable("id");
+
+        return request.bodyToMono(Review.class)
+                .flatMap(reqReview -> repository.updateFields(reviewId, reqReview, partial))
+                .flatMap(reviewUpdate -> recordStats(
+                        reviewStatsRepository.recordUpdated(reviewUpdate.getPrevious(), reviewUpdate.getUpdated()),
+                        reviewUpdate.getUpdated()))
                 .flatMap(savedReview -> ServerResponse.ok().bodyValue(savedReview))
-        ).switchIfEmpty(ServerResponse.notFound().build());
+                .switchIfEmpty(ServerResponse.notFound().build());
     }
 
     public Mono<ServerResponse> deleteById(ServerRequest request) {
         var id = request.pathVariable("id");
 
-        var existingReview = repository.findById(id);
-
-        return existingReview.flatMap(review -> repository.deleteById(id))
+        return repository.findAndRemoveById(id)
+                .flatMap(review -> recordStats(reviewStatsRepository.recordDeleted(review), review))
                 .then(ServerResponse.noContent().build());
     }
 
-    public Mono<ServerResponse> getReviewsStream(ServerRequest request) {
+    // the review is already written, so a failed stats update doesn't fail the request; an $inc can't
+    // safely be retried, so the movie is marked and ReviewStatsRebuilder recomputes its stats instead
+    private Mono<Review> recordStats(Mono<Void> statsUpdate, Review review) {
+        return statsUpdate
+                .onErrorResume(ex -> {
+                    log.warn("Unable to update review stats for movieInfoId {}, marking them for rebuild : {}",
+                            review.getMovieInfoId(), ex.getMessage());
+                    return reviewStatsRepository.markForRebuild(review.getMovieInfoId());
+                })
+                .onErrorResume(ex -> {
+                    log.error("Unable to mark review stats for rebuild for movieInfoId {} : {}", review.getMovieInfoId(), ex.getMessage());
+                    return Mono.empty();
+                })
+                .thenReturn(review);
+    }
+
+    public Mono<ServerResponse> getReviewStats(ServerRequest request) {
+        var movieInfoId = request.queryParam("movieInfoId")
+                .map(ReviewHandler::parseMovieInfoId)
+                .orElseThrow(() -> new ReviewDataException("movieInfoId is required"));
+
+        return reviewStatsRepository.findById(movieInfoId)
+                .defaultIfEmpty(ReviewStats.empty(movieInfoId))
+                .flatMap(ServerResponse.ok()::bodyValue);
+    }
 
+    public Mono<ServerResponse> getReviewStatsByMovieInfoIds(ServerRequest request) {
+        var movieInfoIds = parseMovieInfoIds(request);
+
+        // one entry per requested id, in request order, with empty stats for movies without reviews
+        var statsFlux = reviewStatsRepository.findAllById(movieInfoIds)
+                .collectMap(ReviewStats::getMovieInfoId)
+                .flatMapIterable(statsById -> movieInfoIds.stream()
+                        .map(movieInfoId -> statsById.getOrDefault(movieInfoId, ReviewStats.empty(movieInfoId)))
+                        .collect(Collectors.toList()));
+        return ServerResponse.ok().body(statsFlux, ReviewStats.class);
+    }
+
+    public Mono<ServerResponse> getReviewsStream(ServerRequest request) {
+        var reviewsFlux = request.queryParam("movieInfoId")
+                .map(movieInfoId -> reviewsByMovieInfoId.subscribe(parseMovieInfoId(movieInfoId)))
+                .orElseGet(reviewsSink::asFlux);
+
+        var batch = request.queryParam("batch")
+                .map(value -> parseNumber("batch", value, Integer::valueOf))
+                .orElse(null);
+        var maxDelayMs = request.queryParam("maxDelayMs")
+                .map(value -> parseNumber("maxDelayMs", value, Long::valueOf))
+                .orElse(null);
+        // the stream only carries new reviews, each with its own id, so conflate works out as drop-oldest here
+        var reviews = reviewsStreamBuffer.apply(reviewsFlux, Review::getReviewId);
+
+        // one flush per batch rather than per review
+        BodyInserter<Void, ReactiveHttpOutputMessage> body = (message, context) -> message.writeAndFlushWith(
+                reviewsStreamWriter.write(reviews, batch, maxDelayMs, message.bufferFactory()).map(Flux::just));
         return ServerResponse
                 .ok()
                 .contentType(MediaType.APPLICATION_NDJSON)
-                .body(reviewsSink.asFlux(), Review.class)
+                .body(body)
                 .log();
     }
 }
@@ -0,0 +1,21 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewUpdate;
+import reactor.core.publisher.Mono;
+
+public interface ReviewReactiveRepositoryCustom {
+
+    /**
+     * Sets comment and rating from {@code changes} in one findAndModify and returns the
+     * review before and after the update, or empty if there is none with {@code reviewId}.
+     * With {@code partial} only the non-null fields of {@code changes} are set.
+     */
+    Mono<ReviewUpdate> updateFields(String reviewId, Review changes, boolean partial);
+
+    /**
+     * Deletes the review and returns it, or empty if it was already gone, so concurrent
+     * deletes of one review see it removed exactly once.
+     */
+    Mono<Review> findAndRemoveById(String reviewId);
+}
@@ -0,0 +1,44 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+@RequiredArgsConstructor
+public class ReviewReactiveRepositoryCustomImpl implements ReviewReactiveRepositoryCustom {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public Mono<ReviewUpdate> updateFields(String reviewId, Review changes, boolean partial) {
+        var update = new Update();
+        if (!partial || changes.getComment() != null) {
+            update.set("comment", changes.getComment());
+        }
+        if (!partial || changes.getRating() != null) {
+            update.set("rating", changes.getRating());
+        }
+
+        var query = Query.query(where("_id").is(reviewId));
+        if (update.getUpdateObject().isEmpty()) {
+            return mongoTemplate.findOne(query, Review.class)
+                    .map(review -> new ReviewUpdate(review, review));
+        }
+        // the document as it was, with the same changes applied here, gives both sides of the update in one round trip
+        return mongoTemplate.findAndModify(query, update, Review.class)
+                .map(previous -> new ReviewUpdate(previous, new Review(previous.getReviewId(), previous.getMovieInfoId(),
+                        update.modifies("comment") ? changes.getComment() : previous.getComment(),
+                        update.modifies("rating") ? changes.getRating() : previous.getRating())));
+    }
+
+    @Override
+    public Mono<Review> findAndRemoveById(String reviewId) {
+        return mongoTemplate.findAndRemove(Query.query(where("_id").is(reviewId)), Review.class);
+    }
+}
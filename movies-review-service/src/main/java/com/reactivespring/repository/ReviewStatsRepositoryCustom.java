@@ -0,0 +1,45 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStatsRebuild;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+public interface ReviewStatsRepositoryCustom {
+
+    /**
+     * Counts {@code review} into the stats of its movie with a single upsert.
+     */
+    Mono<Void> recordAdded(Review review);
+
+    /**
+     * Moves the stats of the review's movie from the {@code previous} rating to the {@code updated} one.
+     */
+    Mono<Void> recordUpdated(Review previous, Review updated);
+
+    /**
+     * Takes {@code review} out of the stats of its movie, dropping them with the movie's last review.
+     */
+    Mono<Void> recordDeleted(Review review);
+
+    /**
+     * Notes that the stats of {@code movieInfoId} may no longer match its reviews.
+     */
+    Mono<Void> markForRebuild(Long movieInfoId);
+
+    Flux<ReviewStatsRebuild> findMarkedForRebuild();
+
+    /**
+     * Marks for rebuild every movie whose stats are missing or count a different number of reviews
+     * than it has, such as one reviewed before stats were kept, emitting how many were marked.
+     */
+    Mono<Long> markDrifted();
+
+    /**
+     * Rewrites the stats of the marked movie from its reviews and clears the mark, unless the stats
+     * or the mark changed in the meantime; emits whether the rebuild landed.
+     */
+    Mono<Boolean> rebuild(ReviewStatsRebuild mark, Duration settleDelay);
+}
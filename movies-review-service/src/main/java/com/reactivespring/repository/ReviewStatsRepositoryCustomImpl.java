@@ -0,0 +1,264 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import com.reactivespring.domain.ReviewStatsRebuild;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.group;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.lookup;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Keeps count, sum and histogram exact with $inc. $min and $max can only move outwards, so
+ * when the rating leaving the stats was the lowest or highest one both are recomputed from the
+ * movie's reviews, which is the only case that reads them. Every write bumps the stats' version,
+ * and a write computed from a read only lands if the version is still the one it read.
+ */
+@RequiredArgsConstructor
+public class ReviewStatsRepositoryCustomImpl implements ReviewStatsRepositoryCustom {
+
+    // writes to one movie's stats rarely collide, so a bounds rewrite that keeps losing is left to a rebuild
+    private static final int BOUNDS_ATTEMPTS = 3;
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public Mono<Void> recordAdded(Review review) {
+        var delta = new Delta(1);
+        delta.add(review.getRating());
+        return mongoTemplate.upsert(byMovieInfoId(review.getMovieInfoId()), delta.toUpdate(review.getRating()), ReviewStats.class)
+                .then();
+    }
+
+    @Override
+    public Mono<Void> recordUpdated(Review previous, Review updated) {
+        if (Objects.equals(previous.getRating(), updated.getRating())) {
+            return Mono.empty();
+        }
+        var delta = new Delta(0);
+        delta.remove(previous.getRating());
+        delta.add(updated.getRating());
+        return apply(previous.getMovieInfoId(), delta.toUpdate(updated.getRating()), previous.getRating());
+    }
+
+    @Override
+    public Mono<Void> recordDeleted(Review review) {
+        var delta = new Delta(-1);
+        delta.remove(review.getRating());
+        return apply(review.getMovieInfoId(), delta.toUpdate(null), review.getRating());
+    }
+
+    @Override
+    public Mono<Void> markForRebuild(Long movieInfoId) {
+        return mongoTemplate.upsert(byMovieInfoId(movieInfoId), Update.update("markedAt", Instant.now()), ReviewStatsRebuild.class)
+                .then();
+    }
+
+    @Override
+    public Flux<ReviewStatsRebuild> findMarkedForRebuild() {
+        return mongoTemplate.findAll(ReviewStatsRebuild.class);
+    }
+
+    @Override
+    public Mono<Long> markDrifted() {
+        var aggregation = newAggregation(
+                group("movieInfoId").count().as("reviewCount"),
+                lookup(mongoTemplate.getCollectionName(ReviewStats.class), "_id", "_id", "stats"));
+
+        return mongoTemplate.aggregate(aggregation, Review.class, Document.class)
+                .filter(counted -> counted.get("_id") != null && !countMatches(counted))
+                .concatMap(counted -> markForRebuild(((Number) counted.get("_id")).longValue()).thenReturn(counted))
+                .count();
+    }
+
+    private static boolean countMatches(Document counted) {
+        var stats = counted.getList("stats", Document.class);
+        if (stats.isEmpty()) {
+            return false;
+        }
+        var statsCount = (Number) stats.get(0).get("reviewCount");
+        return statsCount != null && statsCount.longValue() == ((Number) counted.get("reviewCount")).longValue();
+    }
+
+    @Override
+    public Mono<Boolean> rebuild(ReviewStatsRebuild mark, Duration settleDelay) {
+        var movieInfoId = mark.getMovieInfoId();
+        return mongoTemplate.findById(movieInfoId, ReviewStats.class)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(current -> mongoTemplate.find(Query.query(where("movieInfoId").is(movieInfoId)), Review.class)
+                        .collectList()
+                        .map(reviews -> fromReviews(movieInfoId, reviews))
+                        // the stats update of a review read just now may still be on its way; if it lands
+                        // while this waits it moves the version, and the rebuild is left for the next round
+                        .delayElement(settleDelay)
+                        .flatMap(rebuilt -> replace(current, rebuilt)))
+                .flatMap(landed -> landed
+                        ? mongoTemplate.remove(byMovieInfoId(movieInfoId).addCriteria(where("markedAt").is(mark.getMarkedAt())),
+                                ReviewStatsRebuild.class).thenReturn(true)
+                        : Mono.just(false));
+    }
+
+    private Mono<Boolean> replace(Optional<ReviewStats> current, ReviewStats rebuilt) {
+        if (current.isEmpty()) {
+            if (rebuilt.getReviewCount() == 0) {
+                return Mono.just(true);
+            }
+            return mongoTemplate.insert(rebuilt)
+                    .thenReturn(true)
+                    // a review write created the stats since they were read
+                    .onErrorReturn(DuplicateKeyException.class, false);
+        }
+        var query = byVersion(rebuilt.getMovieInfoId(), current.get().getVersion());
+        if (rebuilt.getReviewCount() == 0) {
+            return mongoTemplate.remove(query, ReviewStats.class)
+                    .map(result -> result.getDeletedCount() > 0);
+        }
+        rebuilt.setVersion(current.get().getVersion() + 1);
+        return mongoTemplate.findAndReplace(query, rebuilt)
+                .hasElement();
+    }
+
+    private Mono<Void> apply(Long movieInfoId, Update update, Double removedRating) {
+        return mongoTemplate.findAndModify(byMovieInfoId(movieInfoId), update,
+                        FindAndModifyOptions.options().returnNew(true), ReviewStats.class)
+                .flatMap(stats -> {
+                    if (stats.getReviewCount() <= 0) {
+                        return mongoTemplate.remove(byMovieInfoId(movieInfoId).addCriteria(where("reviewCount").lte(0)), ReviewStats.class)
+                                .then();
+                    }
+                    if (removedRating != null && isBound(removedRating, stats)) {
+                        return recomputeBounds(movieInfoId);
+                    }
+                    return Mono.<Void>empty();
+                })
+                .thenReturn(true)
+                // the review was there, so its movie's stats should have been too
+                .switchIfEmpty(Mono.defer(() -> markForRebuild(movieInfoId).thenReturn(true)))
+                .then();
+    }
+
+    private static boolean isBound(double rating, ReviewStats stats) {
+        return stats.getMinRating() == null || stats.getMaxRating() == null
+                || rating <= stats.getMinRating() || rating >= stats.getMaxRating();
+    }
+
+    private Mono<Void> recomputeBounds(Long movieInfoId) {
+        return Flux.range(0, BOUNDS_ATTEMPTS)
+                .concatMap(attempt -> rewriteBounds(movieInfoId))
+                .filter(landed -> landed)
+                .next()
+                .switchIfEmpty(Mono.defer(() -> markForRebuild(movieInfoId).thenReturn(false)))
+                .then();
+    }
+
+    // a review added between reading the stats and writing the bounds moves the version, so its
+    // $min or $max is never overwritten by bounds computed without it
+    private Mono<Boolean> rewriteBounds(Long movieInfoId) {
+        var aggregation = newAggregation(
+                match(where("movieInfoId").is(movieInfoId).and("rating").ne(null)),
+                group().min("rating").as("minRating").max("rating").as("maxRating"));
+
+        return mongoTemplate.findById(movieInfoId, ReviewStats.class)
+                .flatMap(stats -> mongoTemplate.aggregate(aggregation, Review.class, Document.class)
+                        .next()
+                        .map(bounds -> new Update()
+                                .set("minRating", bounds.getDouble("minRating"))
+                                .set("maxRating", bounds.getDouble("maxRating")))
+                        .defaultIfEmpty(new Update().unset("minRating").unset("maxRating"))
+                        .flatMap(update -> mongoTemplate.updateFirst(byVersion(movieInfoId, stats.getVersion()),
+                                update.inc("version", 1), ReviewStats.class))
+                        .map(result -> result.getMatchedCount() > 0))
+                // gone with the movie's last review in the meantime
+                .defaultIfEmpty(true);
+    }
+
+    private static ReviewStats fromReviews(Long movieInfoId, List<Review> reviews) {
+        var stats = ReviewStats.empty(movieInfoId);
+        for (var review : reviews) {
+            stats.setReviewCount(stats.getReviewCount() + 1);
+            var rating = review.getRating();
+            if (rating != null) {
+                stats.setRatingCount(stats.getRatingCount() + 1);
+                stats.setRatingSum(stats.getRatingSum() + rating);
+                stats.setMinRating(stats.getMinRating() == null ? rating : Math.min(stats.getMinRating(), rating));
+                stats.setMaxRating(stats.getMaxRating() == null ? rating : Math.max(stats.getMaxRating(), rating));
+                stats.getRatingHistogram().merge(ReviewStats.histogramBucket(rating), 1L, Long::sum);
+            }
+        }
+        return stats;
+    }
+
+    private static Query byVersion(Long movieInfoId, long version) {
+        // stats written before they carried a version read as version 0
+        var versionCriteria = version == 0
+                ? new Criteria().orOperator(where("version").is(0L), where("version").exists(false))
+                : where("version").is(version);
+        return byMovieInfoId(movieInfoId).addCriteria(versionCriteria);
+    }
+
+    private static Query byMovieInfoId(Long movieInfoId) {
+        return Query.query(where("_id").is(movieInfoId));
+    }
+
+    // $inc takes each field once, so changes to the same field are summed up front
+    private static class Delta {
+        private final long reviewCount;
+        private long ratingCount;
+        private double ratingSum;
+        private final Map<String, Long> histogram = new HashMap<>();
+
+        private Delta(long reviewCount) {
+            this.reviewCount = reviewCount;
+        }
+
+        private void add(Double rating) {
+            if (rating != null) {
+                ratingCount++;
+                ratingSum += rating;
+                histogram.merge(ReviewStats.histogramBucket(rating), 1L, Long::sum);
+            }
+        }
+
+        private void remove(Double rating) {
+            if (rating != null) {
+                ratingCount--;
+                ratingSum -= rating;
+                histogram.merge(ReviewStats.histogramBucket(rating), -1L, Long::sum);
+            }
+        }
+
+        private Update toUpdate(Double addedRating) {
+            var update = new Update()
+                    .inc("reviewCount", reviewCount)
+                    .inc("ratingCount", ratingCount)
+                    .inc("ratingSum", ratingSum);
+            histogram.forEach((bucket, count) -> update.inc("ratingHistogram." + bucket, count));
+            update.inc("version", 1);
+            if (addedRating != null) {
+                update.min("minRating", addedRating).max("maxRating", addedRating);
+            }
+            return update;
+        }
+    }
+}
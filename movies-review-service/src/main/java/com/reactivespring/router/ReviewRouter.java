@@ -8,6 +8,7 @@ import org.springframework.web.reactive.function.server.RouterFunction;
 import org.springframework.web.reactive.function.server.ServerResponse;
 
 import static org.springframework.web.reactive.function.server.RequestPredicates.path;
+import static org.springframework.web.reactive.function.server.RequestPredicates.queryParam;
 import static org.springframework.web.reactive.function.server.RouterFunctions.route;
 
 @Configuration
@@ -23,10 +24,14 @@ public class ReviewRouter {
                 .nest(path("/v1/reviews"), builder -> {
                     builder
                             .POST("", reviewHandler::addReview)
+                            .GET("", queryParam("movieInfoIds", ids -> true), reviewHandler::getReviewsByMovieInfoIds)
                             .GET("", reviewHandler::getReviews)
                             .PUT("/{id}", reviewHandler::updateReview)
+                            .PATCH("/{id}", reviewHandler::patchReview)
                             .DELETE("/{id}", reviewHandler::deleteById)
-                            .GET("/stream", reviewHandler::getReviewsStream);
+                            .GET("/stream", reviewHandler::getReviewsStream)
+                            .GET("/stats", queryParam("movieInfoIds", ids -> true), reviewHandler::getReviewStatsByMovieInfoIds)
+                            .GET("/stats", reviewHandler::getReviewStats);
                 })
                 .GET("/v1/helloworld", serverRequest -> ServerResponse.ok().bodyValue("helloworld"))
                 .build();
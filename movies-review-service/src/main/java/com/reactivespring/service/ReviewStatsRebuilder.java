@@ -0,0 +1,81 @@
+package com.reactivespring.service;
+
+import com.reactivespring.repository.ReviewStatsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+
+/**
+ * Rebuilds the stats of movies marked after a failed stats update, so a lost update is put right
+ * from the reviews instead of skewing the movie's stats for good. At startup it also marks the
+ * movies whose stats are missing or count the wrong number of reviews.
+ */
+@Component
+@Slf4j
+public class ReviewStatsRebuilder {
+
+    private final ReviewStatsRepository reviewStatsRepository;
+    private final Duration interval;
+    private final Duration settleDelay;
+    private Disposable subscription;
+
+    public ReviewStatsRebuilder(ReviewStatsRepository reviewStatsRepository,
+                                @Value("${reviews.stats.rebuild.interval:30s}") Duration interval,
+                                @Value("${reviews.stats.rebuild.settleDelay:2s}") Duration settleDelay) {
+        this.reviewStatsRepository = reviewStatsRepository;
+        this.interval = interval;
+        this.settleDelay = settleDelay;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        // movies reviewed before stats were kept get theirs built from the reviews on the first run
+        var seed = reviewStatsRepository.markDrifted()
+                .doOnNext(marked -> {
+                    if (marked > 0) {
+                        log.info("Marked {} movies with missing or drifted review stats for rebuild", marked);
+                    }
+                })
+                .onErrorResume(ex -> {
+                    log.error("Unable to look for missing or drifted review stats : {}", ex.getMessage());
+                    return Mono.just(0L);
+                });
+        subscription = seed.thenMany(Flux.interval(interval, interval))
+                .onBackpressureDrop()
+                .concatMap(tick -> rebuildMarked(), 1)
+                .subscribe();
+    }
+
+    /**
+     * Rebuilds every marked movie once, emitting how many rebuilds landed; the others stay marked.
+     */
+    public Mono<Long> rebuildMarked() {
+        return reviewStatsRepository.findMarkedForRebuild()
+                .concatMap(mark -> reviewStatsRepository.rebuild(mark, settleDelay)
+                        .onErrorResume(ex -> {
+                            log.warn("Unable to rebuild review stats for movieInfoId {} : {}", mark.getMovieInfoId(), ex.getMessage());
+                            return Mono.just(false);
+                        }))
+                .filter(landed -> landed)
+                .count()
+                .onErrorResume(ex -> {
+                    log.error("Unable to read the review stats marked for rebuild : {}", ex.getMessage());
+                    return Mono.just(0L);
+                });
+    }
+
+    @PreDestroy
+    public void close() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.reactivespring.util;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Routes each element only to the subscribers of its key. A key's sink is created by its first
+ * subscriber and dropped with its last, so idle keys cost nothing and publishing to a key nobody
+ * follows is a single map lookup.
+ */
+public class KeyedBroadcaster<K, T> {
+
+    private final ConcurrentMap<K, Channel<T>> channels = new ConcurrentHashMap<>();
+
+    public Flux<T> subscribe(K key) {
+        return Flux.defer(() -> {
+            var channel = channels.compute(key, (k, existing) -> {
+                var joined = existing == null ? new Channel<T>() : existing;
+                joined.subscribers++;
+                return joined;
+            });
+            return channel.sink.asFlux()
+                    .doFinally(signalType -> channels.computeIfPresent(key,
+                            (k, current) -> current == channel && --current.subscribers == 0 ? null : current));
+        });
+    }
+
+    public void publish(K key, T element) {
+        var channel = channels.get(key);
+        if (channel != null) {
+            // the sink takes one emitter at a time, and concurrent writes to one key are rare enough to lock on
+            synchronized (channel) {
+                channel.sink.tryEmitNext(element);
+            }
+        }
+    }
+
+    public int getActiveKeyCount() {
+        return channels.size();
+    }
+
+    private static class Channel<T> {
+        // a subscriber that can't keep up misses elements instead of holding back the others
+        private final Sinks.Many<T> sink = Sinks.many().multicast().directBestEffort();
+        // only read and written inside the map's compute calls for this key
+        private int subscribers;
+    }
+}
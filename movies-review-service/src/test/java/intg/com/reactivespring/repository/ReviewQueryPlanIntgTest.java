@@ -0,0 +1,68 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.util.QueryPlanRecorder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+
+/**
+ * Explains the finds each ReviewReactiveRepository method issues and fails on a collection scan.
+ */
+@DataMongoTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {"spring.mongodb.embedded.version= latest"})
+@Import(QueryPlanRecorder.Recording.class)
+@DirtiesContext
+class ReviewQueryPlanIntgTest {
+
+    @Autowired
+    ReviewReactiveRepository repository;
+
+    @Autowired
+    ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    QueryPlanRecorder queryPlanRecorder;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        repository.saveAll(List.of(
+                new Review(null, 1L, "Awesome Movie", 9.0),
+                new Review(null, 2L, "Excellent Movie", 8.0)))
+                .blockLast();
+
+        // indexes are created asynchronously when the mapping context starts up
+        for (int attempt = 0; attempt < 50 && !indexNames().contains("movieInfoId"); attempt++) {
+            Thread.sleep(100);
+        }
+    }
+
+    @Test
+    void findReviewByMovieInfoId(){
+        queryPlanRecorder.assertIndexed(mongoTemplate, repository.findReviewByMovieInfoId(1L));
+    }
+
+    @Test
+    void findReviewByMovieInfoIdIn(){
+        queryPlanRecorder.assertIndexed(mongoTemplate, repository.findReviewByMovieInfoIdIn(List.of(1L, 2L), Sort.by("movieInfoId")));
+    }
+
+    private List<String> indexNames() {
+        return mongoTemplate.indexOps(Review.class)
+                .getIndexInfo()
+                .map(IndexInfo::getName)
+                .collectList()
+                .block();
+    }
+}
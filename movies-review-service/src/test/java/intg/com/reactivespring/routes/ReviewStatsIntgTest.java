@@ -0,0 +1,248 @@
+package com.reactivespring.routes;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import com.reactivespring.domain.ReviewStatsRebuild;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.repository.ReviewStatsRepository;
+import com.reactivespring.service.ReviewStatsRebuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@TestPropertySource(properties = {"spring.mongodb.embedded.version= latest", "reviews.stats.rebuild.settleDelay=0ms"})
+@AutoConfigureWebTestClient
+public class ReviewStatsIntgTest {
+
+    private static final String REVIEWS_URL = "/v1/reviews";
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @Autowired
+    ReviewReactiveRepository repository;
+
+    @Autowired
+    ReviewStatsRepository reviewStatsRepository;
+
+    @Autowired
+    ReviewStatsRebuilder reviewStatsRebuilder;
+
+    @Autowired
+    ReactiveMongoTemplate mongoTemplate;
+
+    // other tests write reviews through the API too, which leaves stats behind
+    @BeforeEach
+    void setUp(){
+        repository.deleteAll().block();
+        reviewStatsRepository.deleteAll().block();
+        mongoTemplate.remove(new Query(), ReviewStatsRebuild.class).block();
+    }
+
+    @Test
+    void getReviewStats_followsAddUpdateAndDelete(){
+        //given
+        var lowest = addReview(new Review(null, 1L, "Good Movie", 6.0));
+        addReview(new Review(null, 1L, "Awesome Movie", 9.0));
+        addReview(new Review(null, 1L, "Excellent Movie", 8.5));
+        addReview(new Review(null, 1L, "No rating", null));
+        addReview(new Review(null, 2L, "Other Movie", 3.0));
+
+        var stats = getStats(1L);
+        assertEquals(4, stats.getReviewCount());
+        assertEquals(3, stats.getRatingCount());
+        assertEquals(6.0, stats.getMinRating());
+        assertEquals(9.0, stats.getMaxRating());
+        assertEquals(23.5 / 3, stats.getAverageRating(), 0.0001);
+        assertEquals(1L, stats.getRatingHistogram().get("8"));
+
+        //when
+        webTestClient
+                .patch()
+                .uri(REVIEWS_URL + "/{id}", lowest.getReviewId())
+                .bodyValue(new Review(null, null, null, 7.0))
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        //then
+        stats = getStats(1L);
+        assertEquals(4, stats.getReviewCount());
+        assertEquals(7.0, stats.getMinRating());
+        assertEquals(24.5 / 3, stats.getAverageRating(), 0.0001);
+        assertEquals(0L, stats.getRatingHistogram().get("6"));
+        assertEquals(1L, stats.getRatingHistogram().get("7"));
+
+        //when
+        deleteReview(lowest.getReviewId());
+
+        //then
+        stats = getStats(1L);
+        assertEquals(3, stats.getReviewCount());
+        assertEquals(2, stats.getRatingCount());
+        assertEquals(8.5, stats.getMinRating());
+        assertEquals(9.0, stats.getMaxRating());
+    }
+
+    @Test
+    void getReviewStats_droppedWithLastReview(){
+        //given
+        var review = addReview(new Review(null, 3L, "Awesome Movie", 9.0));
+
+        //when
+        deleteReview(review.getReviewId());
+        deleteReview(review.getReviewId());
+
+        //then
+        var stats = getStats(3L);
+        assertEquals(0, stats.getReviewCount());
+        assertNull(stats.getAverageRating());
+        assertEquals(0L, reviewStatsRepository.count().block());
+    }
+
+    @Test
+    void getReviewStatsByMovieInfoIds(){
+        //given
+        addReview(new Review(null, 1L, "Awesome Movie", 9.0));
+        addReview(new Review(null, 2L, "Excellent Movie", 8.0));
+
+        //when
+        var stats = webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/stats?movieInfoIds={ids}", "2,5,1")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(ReviewStats.class)
+                .returnResult()
+                .getResponseBody();
+
+        //then
+        assertNotNull(stats);
+        assertEquals(List.of(2L, 5L, 1L), stats.stream().map(ReviewStats::getMovieInfoId).collect(Collectors.toList()));
+        assertEquals(List.of(1L, 0L, 1L), stats.stream().map(ReviewStats::getReviewCount).collect(Collectors.toList()));
+    }
+
+    @Test
+    void rebuildMarked_restoresDriftedStats(){
+        //given
+        addReview(new Review(null, 1L, "Good Movie", 6.0));
+        addReview(new Review(null, 1L, "Awesome Movie", 9.0));
+        var drifted = reviewStatsRepository.findById(1L).block();
+        assertNotNull(drifted);
+        drifted.setReviewCount(42);
+        drifted.setRatingSum(0);
+        drifted.setMaxRating(6.0);
+        reviewStatsRepository.save(drifted).block();
+        reviewStatsRepository.markForRebuild(1L).block();
+
+        //when
+        var rebuilt = reviewStatsRebuilder.rebuildMarked().block();
+
+        //then
+        assertEquals(1L, rebuilt);
+        var stats = getStats(1L);
+        assertEquals(2, stats.getReviewCount());
+        assertEquals(7.5, stats.getAverageRating(), 0.0001);
+        assertEquals(9.0, stats.getMaxRating());
+        assertEquals(0L, reviewStatsRepository.findMarkedForRebuild().count().block());
+    }
+
+    @Test
+    void markDrifted_seedsStatsOfMoviesReviewedBeforeStatsWereKept(){
+        //given
+        repository.saveAll(List.of(
+                new Review(null, 1L, "Good Movie", 6.0),
+                new Review(null, 1L, "Awesome Movie", 9.0)))
+                .blockLast();
+        addReview(new Review(null, 1L, "Excellent Movie", 8.0));
+        addReview(new Review(null, 2L, "Other Movie", 3.0));
+
+        //when
+        var marked = reviewStatsRepository.markDrifted().block();
+        var rebuilt = reviewStatsRebuilder.rebuildMarked().block();
+
+        //then
+        assertEquals(1L, marked);
+        assertEquals(1L, rebuilt);
+        var stats = getStats(1L);
+        assertEquals(3, stats.getReviewCount());
+        assertEquals(6.0, stats.getMinRating());
+        assertEquals(23.0 / 3, stats.getAverageRating(), 0.0001);
+        assertEquals(1, getStats(2L).getReviewCount());
+    }
+
+    @Test
+    void rebuild_yieldsToConcurrentReviewWrite() throws Exception {
+        //given
+        addReview(new Review(null, 1L, "Good Movie", 6.0));
+        reviewStatsRepository.markForRebuild(1L).block();
+        var mark = reviewStatsRepository.findMarkedForRebuild().blockFirst();
+        assertNotNull(mark);
+
+        //when
+        var rebuild = reviewStatsRepository.rebuild(mark, Duration.ofMillis(1000)).toFuture();
+        // lands while the rebuild waits out its settle delay
+        Thread.sleep(300);
+        addReview(new Review(null, 1L, "Awesome Movie", 9.0));
+
+        //then
+        assertFalse(rebuild.get());
+        assertEquals(2, getStats(1L).getReviewCount());
+        assertEquals(1L, reviewStatsRepository.findMarkedForRebuild().count().block());
+    }
+
+    private Review addReview(Review review) {
+        return webTestClient
+                .post()
+                .uri(REVIEWS_URL)
+                .bodyValue(review)
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectBody(Review.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    private void deleteReview(String reviewId) {
+        webTestClient
+                .delete()
+                .uri(REVIEWS_URL + "/{id}", reviewId)
+                .exchange()
+                .expectStatus()
+                .isNoContent();
+    }
+
+    private ReviewStats getStats(Long movieInfoId) {
+        var stats = webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/stats?movieInfoId={id}", movieInfoId)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(ReviewStats.class)
+                .returnResult()
+                .getResponseBody();
+        assertNotNull(stats);
+        return stats;
+    }
+}
@@ -109,6 +109,27 @@ public class ReviewsIntgTest {
         //then
     }
 
+    @Test
+    void getReviewsByMovieInfoIds(){
+        //given
+        var uri = UriComponentsBuilder
+                .fromUriString(REVIEWS_URL)
+                .queryParam("movieInfoIds", "1,2,3")
+                .buildAndExpand()
+                .toUri();
+        //when
+
+        webTestClient
+                .get()
+                .uri(uri)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(Review.class)
+                .hasSize(3);
+        //then
+    }
+
     @Test
     void updateReview(){
         //given
@@ -135,6 +156,41 @@ public class ReviewsIntgTest {
         //then
     }
 
+    @Test
+    void patchReview(){
+        //given
+        var patch = new Review(null, null, null, 7.5);
+
+        //when
+        webTestClient
+                .patch()
+                .uri(REVIEWS_URL + "/{id}", "123")
+                .bodyValue(patch)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Review.class)
+        //then
+                .consumeWith(reviewEntityExchangeResult -> {
+                    var patchedReview = reviewEntityExchangeResult.getResponseBody();
+                    assert patchedReview != null;
+                    assert patchedReview.getRating().equals(7.5);
+                    assert patchedReview.getComment().equals("Awesome Movie");
+                    assert patchedReview.getMovieInfoId().equals(1L);
+                });
+    }
+
+    @Test
+    void patchReview_notFound(){
+        webTestClient
+                .patch()
+                .uri(REVIEWS_URL + "/{id}", "missing")
+                .bodyValue(new Review(null, null, "Master Piece", null))
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+    }
+
     @Test
     void deleteReview(){
         //given
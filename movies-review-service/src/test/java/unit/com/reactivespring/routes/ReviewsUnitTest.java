@@ -1,10 +1,15 @@
 package com.reactivespring.routes;
 
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import com.reactivespring.domain.ReviewUpdate;
 import com.reactivespring.exceptionhandler.GlobalErrorHandler;
 import com.reactivespring.handler.ReviewHandler;
 import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.repository.ReviewStatsRepository;
 import com.reactivespring.router.ReviewRouter;
+import com.reactivespring.util.NdjsonStreamWriter;
+import com.reactivespring.util.SlowConsumerBuffer;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
@@ -16,6 +21,9 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 import static org.mockito.Mockito.*;
 
@@ -28,6 +36,15 @@ public class ReviewsUnitTest {
     @MockBean
     private ReviewReactiveRepository repository;
 
+    @MockBean
+    private ReviewStatsRepository reviewStatsRepository;
+
+    @MockBean
+    private SlowConsumerBuffer reviewsStreamBuffer;
+
+    @MockBean
+    private NdjsonStreamWriter reviewsStreamWriter;
+
     @Autowired
     private WebTestClient webTestClient;
 
@@ -37,6 +54,7 @@ public class ReviewsUnitTest {
         var review = new Review(null, 1L, "Awesome Movie", 9.0);
 
         when(repository.save(isA(Review.class))).thenReturn(Mono.just(new Review("ars", 1L, "Awesome Movie", 9.0)));
+        when(reviewStatsRepository.recordAdded(isA(Review.class))).thenReturn(Mono.empty());
 
         //when
 
@@ -100,14 +118,39 @@ public class ReviewsUnitTest {
                 .hasSize(3);
     }
 
+    @Test
+    void getReviewsByMovieInfoIds_invalidId(){
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?movieInfoIds={ids}", "1,abc")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void getReviewsByMovieInfoIds_tooManyIds(){
+        var ids = LongStream.rangeClosed(1, 101)
+                .mapToObj(String::valueOf)
+                .collect(Collectors.joining(","));
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?movieInfoIds={ids}", ids)
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
     @Test
     void updateReview(){
         //given
-        var existingReview = new Review("123", 1L, "Awesome Movie", 9.0);
         var newReview = new Review("123", 1L, "Master Piece", 10.0);
 
-        when(repository.findById(isA(String.class))).thenReturn(Mono.just(existingReview));
-        when(repository.save(isA(Review.class))).thenReturn(Mono.just(newReview));
+        var oldReview = new Review("123", 1L, "Awesome Movie", 9.0);
+
+        when(repository.updateFields(eq("123"), isA(Review.class), eq(false))).thenReturn(Mono.just(new ReviewUpdate(oldReview, newReview)));
+        when(reviewStatsRepository.recordUpdated(oldReview, newReview)).thenReturn(Mono.empty());
 
         //when
         //then
@@ -135,8 +178,8 @@ public class ReviewsUnitTest {
         //given
         var existingReview = new Review("123", 1L, "Awesome Movie", 9.0);
 
-        when(repository.findById(isA(String.class))).thenReturn(Mono.just(existingReview));
-        when(repository.deleteById("123")).thenReturn(Mono.empty());
+        when(repository.findAndRemoveById("123")).thenReturn(Mono.just(existingReview));
+        when(reviewStatsRepository.recordDeleted(existingReview)).thenReturn(Mono.empty());
 
         //when
         //then
@@ -147,4 +190,97 @@ public class ReviewsUnitTest {
                 .expectStatus()
                 .isNoContent();
     }
+
+    @Test
+    void getReviewStats(){
+        //given
+        var stats = new ReviewStats(1L, 2, 2, 17.0, 8.0, 9.0, Map.of("8", 1L, "9", 1L), 0);
+        when(reviewStatsRepository.findById(1L)).thenReturn(Mono.just(stats));
+
+        //when
+        //then
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/stats?movieInfoId={id}", 1L)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.reviewCount").isEqualTo(2)
+                .jsonPath("$.averageRating").isEqualTo(8.5)
+                .jsonPath("$.ratingHistogram.9").isEqualTo(1);
+    }
+
+    @Test
+    void getReviewStats_movieWithoutReviews(){
+        //given
+        when(reviewStatsRepository.findById(2L)).thenReturn(Mono.empty());
+
+        //when
+        //then
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/stats?movieInfoId={id}", 2L)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.movieInfoId").isEqualTo(2)
+                .jsonPath("$.reviewCount").isEqualTo(0)
+                .jsonPath("$.averageRating").doesNotExist();
+    }
+
+    @Test
+    void getReviewStats_missingMovieInfoId(){
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/stats")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void getReviewStats_invalidMovieInfoId(){
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/stats?movieInfoId={id}", "abc")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void getReviewStatsByMovieInfoIds_tooManyIds(){
+        var ids = LongStream.rangeClosed(1, 101)
+                .mapToObj(String::valueOf)
+                .collect(Collectors.joining(","));
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/stats?movieInfoIds={ids}", ids)
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void getReviewsStream_invalidMovieInfoId(){
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/stream?movieInfoId={id}", "abc")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void getReviewsStream_invalidBatch(){
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/stream?batch={batch}&maxDelayMs={maxDelayMs}", "50", "soon")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
 }
@@ -0,0 +1,95 @@
+package com.reactivespring.util;
+
+import com.reactivespring.domain.Review;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares keyed routing against one shared sink filtered by every subscriber, with
+ * {@value #SUBSCRIBERS} subscribers spread across {@value #MOVIES} movies.
+ * Run with {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+class KeyedBroadcasterBenchmark {
+
+    private static final int MOVIES = 1_000;
+    private static final int SUBSCRIBERS = 10_000;
+    private static final int EVENTS = 20_000;
+
+    @Test
+    void publishThroughput() {
+        // warm up both paths before measuring
+        keyed(EVENTS / 5);
+        firehose(EVENTS / 5);
+
+        report("keyed", keyed(EVENTS));
+        report("filtered firehose", firehose(EVENTS));
+    }
+
+    private Result keyed(int events) {
+        var broadcaster = new KeyedBroadcaster<Long, Review>();
+        return run(events, broadcaster::subscribe, broadcaster::publish);
+    }
+
+    private Result firehose(int events) {
+        var sink = Sinks.many().multicast().<Review>directBestEffort();
+        var signals = new AtomicLong();
+        var result = run(events,
+                movieInfoId -> sink.asFlux()
+                        .doOnNext(review -> signals.incrementAndGet())
+                        .filter(review -> review.getMovieInfoId().equals(movieInfoId)),
+                (movieInfoId, review) -> sink.tryEmitNext(review));
+        return new Result(result.nanos, result.delivered, signals.get());
+    }
+
+    private Result run(int events, Function<Long, Flux<Review>> subscribe, BiConsumer<Long, Review> publish) {
+        var delivered = new AtomicLong();
+        List<Disposable> subscriptions = new ArrayList<>(SUBSCRIBERS);
+        for (int i = 0; i < SUBSCRIBERS; i++) {
+            subscriptions.add(subscribe.apply((long) (i % MOVIES))
+                    .subscribe(review -> delivered.incrementAndGet()));
+        }
+
+        var start = System.nanoTime();
+        for (int i = 0; i < events; i++) {
+            long movieInfoId = i % MOVIES;
+            publish.accept(movieInfoId, new Review(null, movieInfoId, "Review " + i, 8.0));
+        }
+        var nanos = System.nanoTime() - start;
+
+        subscriptions.forEach(Disposable::dispose);
+        // each event is for one movie, followed by SUBSCRIBERS / MOVIES subscribers
+        assertEquals((long) events * (SUBSCRIBERS / MOVIES), delivered.get());
+        return new Result(nanos, delivered.get(), delivered.get());
+    }
+
+    private static void report(String name, Result result) {
+        System.out.printf("%-18s events=%d elapsed=%s per-event=%s delivered=%d signals-before-filter=%d%n",
+                name, EVENTS, Duration.ofNanos(result.nanos), Duration.ofNanos(result.nanos / EVENTS),
+                result.delivered, result.signals);
+    }
+
+    private static class Result {
+        private final long nanos;
+        private final long delivered;
+        private final long signals;
+
+        private Result(long nanos, long delivered, long signals) {
+            this.nanos = nanos;
+            this.delivered = delivered;
+            this.signals = signals;
+        }
+    }
+}
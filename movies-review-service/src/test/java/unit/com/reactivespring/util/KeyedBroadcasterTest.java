@@ -0,0 +1,49 @@
+package com.reactivespring.util;
+
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class KeyedBroadcasterTest {
+
+    @Test
+    void publish_onlyReachesSubscribersOfTheKey() {
+        var broadcaster = new KeyedBroadcaster<Long, String>();
+
+        StepVerifier.create(broadcaster.subscribe(1L))
+                .then(() -> {
+                    broadcaster.publish(2L, "movie 2");
+                    broadcaster.publish(1L, "movie 1");
+                })
+                .expectNext("movie 1")
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void subscribe_reclaimsKeyAfterLastSubscriberLeaves() {
+        var broadcaster = new KeyedBroadcaster<Long, String>();
+
+        var first = broadcaster.subscribe(1L).subscribe();
+        var second = broadcaster.subscribe(1L).subscribe();
+        broadcaster.subscribe(2L).take(1).subscribe();
+        assertEquals(2, broadcaster.getActiveKeyCount());
+
+        broadcaster.publish(2L, "movie 2");
+        first.dispose();
+        assertEquals(1, broadcaster.getActiveKeyCount());
+
+        second.dispose();
+        assertEquals(0, broadcaster.getActiveKeyCount());
+
+        // a new subscriber to a reclaimed key gets a fresh sink
+        StepVerifier.create(broadcaster.subscribe(1L))
+                .then(() -> broadcaster.publish(1L, "movie 1"))
+                .expectNext("movie 1")
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+}
@@ -0,0 +1,93 @@
+package com.reactivespring.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.reactivespring.client.MovieInfoRestClient;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.util.StreamBroadcaster;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+@Component
+@Slf4j
+public class MovieInfoCache {
+
+    private final MovieInfoRestClient movieInfoRestClient;
+    private final StreamBroadcaster<MovieInfoEvent> movieInfoStream;
+    private final AsyncLoadingCache<String, MovieInfo> cache;
+    private final boolean enabled;
+    private Disposable invalidationSubscription;
+
+    public MovieInfoCache(MovieInfoRestClient movieInfoRestClient,
+                          StreamBroadcaster<MovieInfoEvent> movieInfoStream,
+                          MeterRegistry meterRegistry,
+                          @Value("${restClient.movieInfoCache.enabled:true}") boolean enabled,
+                          @Value("${restClient.movieInfoCache.maximumSize:10000}") long maximumSize,
+                          @Value("${restClient.movieInfoCache.expireAfterWrite:10m}") Duration expireAfterWrite) {
+        this.movieInfoRestClient = movieInfoRestClient;
+        this.movieInfoStream = movieInfoStream;
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .buildAsync((movieId, executor) -> movieInfoRestClient.retrieveMovieInfo(movieId).toFuture());
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), "movieInfo");
+    }
+
+    public Mono<MovieInfo> retrieveMovieInfo(String movieId) {
+        if (!enabled) {
+            return movieInfoRestClient.retrieveMovieInfo(movieId);
+        }
+        // a dependent future, so a cancelled caller can't cancel the load shared with other callers
+        return Mono.fromFuture(() -> cache.get(movieId).thenApply(Function.identity()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void subscribeToChanges() {
+        if (!enabled) {
+            return;
+        }
+        // the broadcaster reconnects on its own, so this subscription lives as long as the app
+        invalidationSubscription = movieInfoStream.asFlux()
+                .subscribe(this::refresh,
+                        ex -> log.error("MovieInfo change stream terminated : {}", ex.getMessage()));
+    }
+
+    private void refresh(MovieInfoEvent event) {
+        var movieInfo = event.getMovieInfo();
+        var movieId = movieInfo.getMovieInfoId();
+        if (movieId != null && event.getOperation() == MovieInfoEvent.Operation.DELETE) {
+            invalidate(movieId);
+            return;
+        }
+        if (movieId != null && cache.getIfPresent(movieId) != null) {
+            log.debug("Refreshing cached movie info for id : {}", movieId);
+            cache.put(movieId, CompletableFuture.completedFuture(movieInfo));
+        }
+    }
+
+    public void invalidate(String movieId) {
+        cache.synchronous().invalidate(movieId);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (invalidationSubscription != null) {
+            invalidationSubscription.dispose();
+        }
+    }
+}
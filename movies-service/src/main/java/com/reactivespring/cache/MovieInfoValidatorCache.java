@@ -0,0 +1,74 @@
+package com.reactivespring.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.reactivespring.domain.MovieInfo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Last fetched movie info per id with the ETag it was served with, so a later fetch can
+ * send If-None-Match and reuse this copy on a 304 instead of downloading and decoding it again.
+ */
+@Component
+public class MovieInfoValidatorCache {
+
+    private final Cache<String, Validated> cache;
+    private final Counter notModified;
+    private final boolean enabled;
+
+    public MovieInfoValidatorCache(MeterRegistry meterRegistry,
+                                   @Value("${restClient.movieInfoValidators.enabled:true}") boolean enabled,
+                                   @Value("${restClient.movieInfoValidators.maximumSize:10000}") long maximumSize,
+                                   @Value("${restClient.movieInfoValidators.expireAfterAccess:1h}") Duration expireAfterAccess) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "movieInfoValidators");
+        this.notModified = Counter.builder("movieinfo.client.not.modified")
+                .description("Movie info fetches answered with 304 Not Modified")
+                .register(meterRegistry);
+    }
+
+    public Optional<Validated> get(String movieInfoId) {
+        return enabled ? Optional.ofNullable(cache.getIfPresent(movieInfoId)) : Optional.empty();
+    }
+
+    public void put(String movieInfoId, String eTag, MovieInfo movieInfo) {
+        if (!enabled) {
+            return;
+        }
+        if (eTag == null) {
+            cache.invalidate(movieInfoId);
+        } else {
+            cache.put(movieInfoId, new Validated(eTag, movieInfo));
+        }
+    }
+
+    public void invalidate(String movieInfoId) {
+        cache.invalidate(movieInfoId);
+    }
+
+    public MovieInfo notModified(Validated validated) {
+        notModified.increment();
+        return validated.getMovieInfo();
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Validated {
+        private final String eTag;
+        private final MovieInfo movieInfo;
+    }
+}
@@ -0,0 +1,42 @@
+package com.reactivespring.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.reactivespring.domain.Review;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Last known reviews per movie, used to fill in a response when the live reviews
+ * call misses its latency budget.
+ */
+@Component
+public class ReviewsCache {
+
+    private final Cache<String, List<Review>> cache;
+
+    public ReviewsCache(MeterRegistry meterRegistry,
+                        @Value("${restClient.reviewsCache.maximumSize:10000}") long maximumSize,
+                        @Value("${restClient.reviewsCache.expireAfterWrite:1m}") Duration expireAfterWrite) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "reviews");
+    }
+
+    public Optional<List<Review>> get(String movieInfoId) {
+        return Optional.ofNullable(cache.getIfPresent(movieInfoId));
+    }
+
+    public void put(String movieInfoId, List<Review> reviews) {
+        cache.put(movieInfoId, reviews);
+    }
+}
@@ -1,43 +1,118 @@
 package com.reactivespring.client;
 
+import com.reactivespring.cache.MovieInfoValidatorCache;
+import com.reactivespring.config.RestClientProperties;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
 import com.reactivespring.exception.MoviesInfoClientException;
 import com.reactivespring.exception.MoviesInfoServerException;
-import lombok.RequiredArgsConstructor;
+import com.reactivespring.util.RequestBatcher;
+import com.reactivespring.util.RequestCoalescer;
+import com.reactivespring.util.RetryBudget;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.scheduling.config.FixedDelayTask;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.Exceptions;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClientRequest;
 import reactor.util.retry.Retry;
 import reactor.util.retry.RetryBackoffSpec;
 
+import javax.annotation.PreDestroy;
+import java.net.URI;
 import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.reactivespring.util.RetryUtil.getRetrySpec;
+import static com.reactivespring.util.RetryUtil.getStreamRetrySpec;
 
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class MovieInfoRestClient {
+    // keeps the request line well under the downstream's 4096 byte limit
+    private static final int MAX_IDS_PER_REQUEST = 100;
+
     private final WebClient webClient;
+    private final RequestCoalescer<String, MovieInfo> movieInfoCoalescer;
+    private final RequestBatcher<String, MovieInfo> movieInfoBatcher;
+    private final MovieInfoValidatorCache movieInfoValidatorCache;
+    private final RestClientProperties.RetryPolicy retryPolicy;
+    private final RetryBudget retryBudget;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
 
     @Value("${restClient.moviesInfoUrl}")
     private String movieInfoUrl;
 
+    public MovieInfoRestClient(@Qualifier("movieInfoWebClient") WebClient webClient, MeterRegistry meterRegistry,
+                               RestClientProperties restClientProperties,
+                               @Qualifier("movieInfoCircuitBreaker") CircuitBreaker circuitBreaker,
+                               @Qualifier("movieInfoBulkhead") Bulkhead bulkhead,
+                               MovieInfoValidatorCache movieInfoValidatorCache,
+                               @Value("${restClient.batching.enabled:false}") boolean batchingEnabled,
+                               @Value("${restClient.batching.maxBatchSize:64}") int maxBatchSize,
+                               @Value("${restClient.batching.maxDelay:2ms}") Duration maxDelay) {
+        this.webClient = webClient;
+        this.retryPolicy = restClientProperties.getMoviesInfo().getRetry();
+        this.retryBudget = new RetryBudget(retryPolicy);
+        this.circuitBreaker = circuitBreaker;
+        this.bulkhead = bulkhead;
+        this.movieInfoValidatorCache = movieInfoValidatorCache;
+        this.movieInfoCoalescer = new RequestCoalescer<>("movieInfo", meterRegistry);
+        this.movieInfoBatcher = batchingEnabled
+                ? new RequestBatcher<String, MovieInfo>(maxBatchSize, maxDelay, this::retrieveMovieInfos, MovieInfo::getMovieInfoId,
+                        MoviesInfoClientException.class::isInstance)
+                : null;
+    }
+
     public Mono<MovieInfo> retrieveMovieInfo(String movieId){
+        if (movieInfoBatcher == null) {
+            return movieInfoCoalescer.coalesce(movieId, () -> fetchMovieInfo(movieId));
+        }
+        return movieInfoCoalescer.coalesce(movieId, () -> movieInfoBatcher.load(movieId)
+                .flatMap(movieInfos -> movieInfos.isEmpty()
+                        ? Mono.error(new MoviesInfoClientException("There is no movie info available for passed in id: " + movieId, HttpStatus.NOT_FOUND.value()))
+                        : Mono.just(movieInfos.get(0))));
+    }
+
+    private Mono<MovieInfo> fetchMovieInfo(String movieId){
+        // looked up per attempt, so a retry revalidates against whatever an earlier attempt stored
+        return Mono.defer(() -> exchangeMovieInfo(movieId, movieInfoValidatorCache.get(movieId).orElse(null)))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .retryWhen(getRetrySpec(retryPolicy, retryBudget))
+                .doOnSubscribe(subscription -> retryBudget.recordRequest())
+                .log();
+    }
+
+    private Mono<MovieInfo> exchangeMovieInfo(String movieId, MovieInfoValidatorCache.Validated validated){
         var url = movieInfoUrl.concat("/{id}");
 
         return webClient
                 .get()
                 .uri(url, movieId)
+                .headers(headers -> {
+                    if (validated != null) {
+                        headers.setIfNoneMatch(validated.getETag());
+                    }
+                })
                 .retrieve()
                 .onStatus(HttpStatus::is4xxClientError, clientResponse -> {
                     if(clientResponse.statusCode() == HttpStatus.NOT_FOUND){
+                        movieInfoValidatorCache.invalidate(movieId);
                         return Mono.error(new MoviesInfoClientException("There is no movie info available for passed in id: " + movieId, clientResponse.rawStatusCode()));
                     }
 
@@ -60,14 +135,31 @@ public class MovieInfoRestClient {
                                             ));
                         }
                 )
-                .bodyToMono(MovieInfo.class)
-                .retryWhen(getRetrySpec())
-                .log();
+                .toEntity(MovieInfo.class)
+                .flatMap(movieInfoEntity -> {
+                    if (movieInfoEntity.getStatusCode() == HttpStatus.NOT_MODIFIED && validated != null) {
+                        return Mono.just(movieInfoValidatorCache.notModified(validated));
+                    }
+                    var movieInfo = movieInfoEntity.getBody();
+                    if (movieInfo != null) {
+                        movieInfoValidatorCache.put(movieId, movieInfoEntity.getHeaders().getETag(), movieInfo);
+                    }
+                    return Mono.justOrEmpty(movieInfo);
+                });
+    }
 
+    public Flux<MovieInfo> retrieveMovieInfos(List<String> movieIds) {
+        return Flux.fromIterable(movieIds)
+                .buffer(MAX_IDS_PER_REQUEST)
+                .flatMap(this::fetchMovieInfos);
     }
 
-    public Flux<MovieInfo> retrieveMovieInfoStream() {
-        var url = movieInfoUrl.concat("/stream");
+    private Flux<MovieInfo> fetchMovieInfos(List<String> movieIds) {
+        var url = UriComponentsBuilder
+                .fromHttpUrl(movieInfoUrl)
+                .queryParam("ids", String.join(",", movieIds))
+                .buildAndExpand()
+                .toUri();
 
         return webClient
                 .get()
@@ -94,8 +186,78 @@ public class MovieInfoRestClient {
                         }
                 )
                 .bodyToFlux(MovieInfo.class)
-                .retryWhen(getRetrySpec())
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .retryWhen(getRetrySpec(retryPolicy, retryBudget))
+                .doOnSubscribe(subscription -> retryBudget.recordRequest());
+    }
+
+    /**
+     * The returned Flux remembers the last event it emitted, so every resubscription, whether
+     * from the retry below or from the caller, resumes after it: by resume token when the
+     * downstream is fed from its change stream, which works across instances, else by offset.
+     */
+    public Flux<MovieInfoEvent> retrieveMovieInfoStream() {
+        var lastOffset = new AtomicLong();
+        var lastEpoch = new AtomicReference<String>();
+        var lastResumeToken = new AtomicReference<String>();
+
+        return Flux.defer(() -> webClient
+                .get()
+                .uri(streamUri(lastOffset.get(), lastEpoch.get(), lastResumeToken.get()))
+                // the stream may sit idle far longer than the pool's response timeout
+                .httpRequest(httpRequest -> httpRequest.<HttpClientRequest>getNativeRequest().responseTimeout(null))
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, clientResponse -> {
+                    return clientResponse
+                            .bodyToMono(String.class)
+                            .flatMap(responseMessage ->
+                                    Mono.error(new MoviesInfoClientException(
+                                            responseMessage,
+                                            clientResponse.rawStatusCode()
+                                    ))
+                            );
+                })
+                .onStatus(HttpStatus::is5xxServerError, clientResponse -> {
+                            log.error("Status code is: {}", clientResponse.statusCode().value());
+                            return clientResponse
+                                    .bodyToMono(String.class)
+                                    .flatMap(responseMessage ->
+                                            Mono.error(
+                                                    new MoviesInfoServerException("Server Exception in MovieInfoService " + responseMessage)
+                                            ));
+                        }
+                )
+                .bodyToFlux(MovieInfoEvent.class))
+                .doOnNext(event -> {
+                    lastOffset.set(event.getOffset());
+                    lastEpoch.set(event.getEpoch());
+                    lastResumeToken.set(event.getResumeToken());
+                })
+                .retryWhen(getStreamRetrySpec(retryPolicy, retryBudget))
+                .doOnSubscribe(subscription -> retryBudget.recordRequest())
                 .log();
 
     }
+
+    private URI streamUri(long lastOffset, String lastEpoch, String lastResumeToken) {
+        var uriBuilder = UriComponentsBuilder.fromHttpUrl(movieInfoUrl.concat("/stream"));
+        if (lastResumeToken != null) {
+            uriBuilder.queryParam("resumeToken", lastResumeToken);
+        } else {
+            uriBuilder.queryParam("fromOffset", lastOffset);
+            // lets a restarted downstream tell that the offset is from its previous run
+            if (lastEpoch != null) {
+                uriBuilder.queryParam("epoch", lastEpoch);
+            }
+        }
+        return uriBuilder.buildAndExpand().toUri();
+    }
+
+    @PreDestroy
+    public void close() {
+        if (movieInfoBatcher != null) {
+            movieInfoBatcher.dispose();
+        }
+    }
 }
@@ -1,43 +1,173 @@
 package com.reactivespring.client;
 
+import com.reactivespring.config.RestClientProperties;
 import com.reactivespring.domain.Review;
 import com.reactivespring.exception.MoviesInfoClientException;
 import com.reactivespring.exception.MoviesInfoServerException;
 import com.reactivespring.exception.ReviewsClientException;
 import com.reactivespring.exception.ReviewsServerException;
-import lombok.RequiredArgsConstructor;
+import com.reactivespring.util.RequestBatcher;
+import com.reactivespring.util.RequestCoalescer;
+import com.reactivespring.util.RetryBudget;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClientRequest;
+
+import javax.annotation.PreDestroy;
+import java.net.URI;
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 
 import static com.reactivespring.util.RetryUtil.getRetrySpec;
 
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class ReviewsRestClient {
 
+    // keeps the request line well under the downstream's 4096 byte limit
+    private static final int MAX_IDS_PER_REQUEST = 100;
+
     private final WebClient webClient;
+    private final RequestCoalescer<String, List<Review>> reviewsCoalescer;
+    private final RequestBatcher<String, Review> reviewsBatcher;
+    private final RestClientProperties.RetryPolicy retryPolicy;
+    private final RetryBudget retryBudget;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final CircuitBreaker streamCircuitBreaker;
+    private final Bulkhead streamBulkhead;
 
     @Value("${restClient.reviewsUrl}")
     private String reviewsUrl;
 
+    public ReviewsRestClient(@Qualifier("reviewsWebClient") WebClient webClient, MeterRegistry meterRegistry,
+                             RestClientProperties restClientProperties,
+                             @Qualifier("reviewsCircuitBreaker") CircuitBreaker circuitBreaker,
+                             @Qualifier("reviewsBulkhead") Bulkhead bulkhead,
+                             @Qualifier("reviewsStreamCircuitBreaker") CircuitBreaker streamCircuitBreaker,
+                             @Qualifier("reviewsStreamBulkhead") Bulkhead streamBulkhead,
+                             @Value("${restClient.batching.enabled:false}") boolean batchingEnabled,
+                             @Value("${restClient.batching.maxBatchSize:64}") int maxBatchSize,
+                             @Value("${restClient.batching.maxDelay:2ms}") Duration maxDelay) {
+        this.webClient = webClient;
+        this.retryPolicy = restClientProperties.getReviews().getRetry();
+        this.retryBudget = new RetryBudget(retryPolicy);
+        this.circuitBreaker = circuitBreaker;
+        this.bulkhead = bulkhead;
+        this.streamCircuitBreaker = streamCircuitBreaker;
+        this.streamBulkhead = streamBulkhead;
+        this.reviewsCoalescer = new RequestCoalescer<>("reviews", meterRegistry);
+        this.reviewsBatcher = batchingEnabled
+                ? new RequestBatcher<String, Review>(maxBatchSize, maxDelay, this::retrieveReviews, review -> String.valueOf(review.getMovieInfoId()),
+                        ReviewsClientException.class::isInstance)
+                : null;
+    }
+
     //movieInfoId
     public Flux<Review> retrieveReviews(String movieInfoId){
+        // coalesced as one list, which joiners share once it is in
+        if (reviewsBatcher == null) {
+            return reviewsCoalescer.coalesce(movieInfoId, () -> fetchReviews(movieInfoId).collectList())
+                    .flatMapIterable(reviews -> reviews);
+        }
+        return reviewsCoalescer.coalesce(movieInfoId, () -> reviewsBatcher.load(movieInfoId))
+                .flatMapIterable(reviews -> reviews);
+    }
+
+    public Flux<Review> retrieveReviews(List<String> movieInfoIds){
+        return Flux.fromIterable(movieInfoIds)
+                .buffer(MAX_IDS_PER_REQUEST)
+                .flatMap(ids -> fetchReviews(reviewsByIdsUrl(ids)));
+    }
+
+    /**
+     * One entry per id with all of its reviews, sent as soon as they are in. The downstream returns
+     * reviews sorted by movieInfoId, so a movie's reviews are complete once the next movie's arrive;
+     * ids without reviews follow when the request for them completes.
+     */
+    public Flux<Map.Entry<String, List<Review>>> retrieveReviewsByMovieInfoId(List<String> movieInfoIds){
+        return Flux.fromIterable(movieInfoIds)
+                .buffer(MAX_IDS_PER_REQUEST)
+                .flatMap(ids -> Flux.defer(() -> {
+                    var withoutReviews = new LinkedHashSet<>(ids);
+                    return fetchReviews(reviewsByIdsUrl(ids))
+                            .bufferUntilChanged(Review::getMovieInfoId)
+                            .map(reviews -> Map.entry(String.valueOf(reviews.get(0).getMovieInfoId()), reviews))
+                            .doOnNext(entry -> withoutReviews.remove(entry.getKey()))
+                            .concatWith(Flux.defer(() -> Flux.fromIterable(withoutReviews))
+                                    .map(id -> Map.entry(id, List.<Review>of())));
+                }));
+    }
+
+    private URI reviewsByIdsUrl(List<String> movieInfoIds){
+        return UriComponentsBuilder
+                .fromHttpUrl(reviewsUrl)
+                .queryParam("movieInfoIds", String.join(",", movieInfoIds))
+                .buildAndExpand()
+                .toUri();
+    }
+
+    private Flux<Review> fetchReviews(String movieInfoId){
         var url = UriComponentsBuilder
                 .fromHttpUrl(reviewsUrl)
                 .queryParam("movieInfoId", movieInfoId)
                 .buildAndExpand()
                 .toUri();
 
+        return fetchReviews(url);
+    }
+
+    /**
+     * Streams the reviews for a movie as NDJSON, one element at a time with downstream demand
+     * governing how fast they are read. Not coalesced or retried: sharing would mean buffering
+     * the whole list, and a retry after partial emission would repeat elements.
+     */
+    public Flux<Review> streamReviews(String movieInfoId){
+        var url = UriComponentsBuilder
+                .fromHttpUrl(reviewsUrl)
+                .queryParam("movieInfoId", movieInfoId)
+                .buildAndExpand()
+                .toUri();
+
+        return exchangeReviews(url, MediaType.APPLICATION_NDJSON)
+                .transformDeferred(CircuitBreakerOperator.of(streamCircuitBreaker))
+                .transformDeferred(BulkheadOperator.of(streamBulkhead));
+    }
+
+    private Flux<Review> fetchReviews(URI url){
+        return exchangeReviews(url, MediaType.APPLICATION_JSON)
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .retryWhen(getRetrySpec(retryPolicy, retryBudget))
+                .doOnSubscribe(subscription -> retryBudget.recordRequest());
+    }
+
+    private Flux<Review> exchangeReviews(URI url, MediaType mediaType){
        return webClient
                .get()
                .uri(url)
+               .accept(mediaType)
+               .httpRequest(httpRequest -> {
+                   // a stream may run, or sit between reviews, far longer than the pool's response timeout
+                   if (MediaType.APPLICATION_NDJSON.equals(mediaType)) {
+                       httpRequest.<HttpClientRequest>getNativeRequest().responseTimeout(null);
+                   }
+               })
                .retrieve()
                .onStatus(HttpStatus::is4xxClientError, clientResponse -> {
                    if(clientResponse.statusCode() == HttpStatus.NOT_FOUND){
@@ -62,8 +192,14 @@ public class ReviewsRestClient {
                                            ));
                        }
                )
-                .bodyToFlux(Review.class)
-               .retryWhen(getRetrySpec());
+                .bodyToFlux(Review.class);
+
+    }
 
+    @PreDestroy
+    public void close() {
+        if (reviewsBatcher != null) {
+            reviewsBatcher.dispose();
+        }
     }
 }
@@ -0,0 +1,105 @@
+package com.reactivespring.config;
+
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.exception.ReviewsClientException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@Slf4j
+public class ResilienceConfiguration {
+
+    @Bean
+    public CircuitBreakerRegistry circuitBreakerRegistry(MeterRegistry meterRegistry){
+        var registry = CircuitBreakerRegistry.ofDefaults();
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(registry).bindTo(meterRegistry);
+        return registry;
+    }
+
+    @Bean
+    public BulkheadRegistry bulkheadRegistry(MeterRegistry meterRegistry){
+        var registry = BulkheadRegistry.ofDefaults();
+        TaggedBulkheadMetrics.ofBulkheadRegistry(registry).bindTo(meterRegistry);
+        return registry;
+    }
+
+    @Bean
+    public CircuitBreaker movieInfoCircuitBreaker(CircuitBreakerRegistry registry, RestClientProperties properties){
+        return circuitBreaker(registry, "moviesInfo", properties.getMoviesInfo().getCircuitBreaker());
+    }
+
+    @Bean
+    public CircuitBreaker reviewsCircuitBreaker(CircuitBreakerRegistry registry, RestClientProperties properties){
+        return circuitBreaker(registry, "reviews", properties.getReviews().getCircuitBreaker());
+    }
+
+    // a stream lasts as long as its client keeps reading, so its duration says nothing about the
+    // downstream's health and must not open the breaker that guards ordinary lookups
+    @Bean
+    public CircuitBreaker reviewsStreamCircuitBreaker(CircuitBreakerRegistry registry, RestClientProperties properties){
+        return circuitBreaker(registry, "reviewsStream", properties.getReviews().getCircuitBreaker(), false);
+    }
+
+    @Bean
+    public Bulkhead movieInfoBulkhead(BulkheadRegistry registry, RestClientProperties properties){
+        return bulkhead(registry, "moviesInfo", properties.getMoviesInfo().getBulkhead());
+    }
+
+    @Bean
+    public Bulkhead reviewsBulkhead(BulkheadRegistry registry, RestClientProperties properties){
+        return bulkhead(registry, "reviews", properties.getReviews().getBulkhead());
+    }
+
+    @Bean
+    public Bulkhead reviewsStreamBulkhead(BulkheadRegistry registry, RestClientProperties properties){
+        return bulkhead(registry, "reviewsStream", properties.getReviews().getStreamBulkhead());
+    }
+
+    private CircuitBreaker circuitBreaker(CircuitBreakerRegistry registry, String name,
+                                          RestClientProperties.CircuitBreakerPolicy policy){
+        return circuitBreaker(registry, name, policy, true);
+    }
+
+    private CircuitBreaker circuitBreaker(CircuitBreakerRegistry registry, String name,
+                                          RestClientProperties.CircuitBreakerPolicy policy, boolean countSlowCalls){
+        var config = CircuitBreakerConfig.custom()
+                .failureRateThreshold(policy.getFailureRateThreshold())
+                // with slow calls not counted, no call is ever slow enough to count
+                .slowCallRateThreshold(countSlowCalls ? policy.getSlowCallRateThreshold() : 100)
+                .slowCallDurationThreshold(countSlowCalls ? policy.getSlowCallDurationThreshold() : Duration.ofNanos(Long.MAX_VALUE))
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+                .slidingWindowSize(policy.getSlidingWindowSize())
+                .minimumNumberOfCalls(policy.getMinimumNumberOfCalls())
+                .waitDurationInOpenState(policy.getWaitDurationInOpenState())
+                .permittedNumberOfCallsInHalfOpenState(policy.getPermittedCallsInHalfOpenState())
+                // a 4xx is the caller's problem, not a sign that the downstream is unhealthy
+                .ignoreExceptions(MoviesInfoClientException.class, ReviewsClientException.class)
+                .build();
+
+        var circuitBreaker = registry.circuitBreaker(name, config);
+        circuitBreaker.getEventPublisher()
+                .onStateTransition(event -> log.warn("Circuit breaker {} : {}",
+                        event.getCircuitBreakerName(), event.getStateTransition()));
+        return circuitBreaker;
+    }
+
+    private Bulkhead bulkhead(BulkheadRegistry registry, String name, RestClientProperties.BulkheadPolicy policy){
+        var config = BulkheadConfig.custom()
+                .maxConcurrentCalls(policy.getMaxConcurrentCalls())
+                .maxWaitDuration(policy.getMaxWaitDuration())
+                .build();
+        return registry.bulkhead(name, config);
+    }
+}
@@ -0,0 +1,66 @@
+package com.reactivespring.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "rest-client")
+public class RestClientProperties {
+
+    private Downstream moviesInfo = new Downstream();
+    private Downstream reviews = new Downstream();
+
+    @Data
+    public static class Downstream {
+        private Pool pool = new Pool();
+        private RetryPolicy retry = new RetryPolicy();
+        private CircuitBreakerPolicy circuitBreaker = new CircuitBreakerPolicy();
+        private BulkheadPolicy bulkhead = new BulkheadPolicy();
+        // long-lived NDJSON streams get their own limit, so they can't use up the one for lookups
+        private BulkheadPolicy streamBulkhead = new BulkheadPolicy();
+    }
+
+    @Data
+    public static class Pool {
+        private int maxConnections = 100;
+        private int pendingAcquireMaxCount = 500;
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(5);
+        private Duration maxIdleTime = Duration.ofSeconds(30);
+        private Duration maxLifeTime = Duration.ofMinutes(5);
+        private Duration evictInBackground = Duration.ofSeconds(30);
+        private Duration connectTimeout = Duration.ofSeconds(2);
+        private Duration responseTimeout = Duration.ofSeconds(5);
+        private boolean keepAlive = true;
+        private boolean h2c = false;
+    }
+
+    @Data
+    public static class RetryPolicy {
+        private long maxAttempts = 3;
+        private Duration firstBackoff = Duration.ofMillis(100);
+        private Duration maxBackoff = Duration.ofSeconds(2);
+        private Duration deadline = Duration.ofSeconds(5);
+        private double budgetPercent = 20;
+        private long minRetriesPerWindow = 10;
+        private Duration budgetWindow = Duration.ofSeconds(10);
+    }
+
+    @Data
+    public static class CircuitBreakerPolicy {
+        private float failureRateThreshold = 50;
+        private float slowCallRateThreshold = 80;
+        private Duration slowCallDurationThreshold = Duration.ofSeconds(2);
+        private int slidingWindowSize = 50;
+        private int minimumNumberOfCalls = 20;
+        private Duration waitDurationInOpenState = Duration.ofSeconds(10);
+        private int permittedCallsInHalfOpenState = 5;
+    }
+
+    @Data
+    public static class BulkheadPolicy {
+        private int maxConcurrentCalls = 50;
+        private Duration maxWaitDuration = Duration.ZERO;
+    }
+}
@@ -0,0 +1,28 @@
+package com.reactivespring.config;
+
+import com.reactivespring.client.MovieInfoRestClient;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.util.StreamBroadcaster;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class StreamConfiguration {
+
+    @Bean
+    public StreamBroadcaster<MovieInfoEvent> movieInfoStreamBroadcaster(
+            MovieInfoRestClient movieInfoRestClient,
+            MeterRegistry meterRegistry,
+            @Value("${restClient.movieInfoStream.replayHistory:100}") int replayHistory,
+            @Value("${restClient.movieInfoStream.replayTtl:5m}") Duration replayTtl,
+            @Value("${restClient.movieInfoStream.subscriberBufferSize:256}") int subscriberBufferSize,
+            @Value("${restClient.movieInfoStream.minReconnectBackoff:1s}") Duration minReconnectBackoff,
+            @Value("${restClient.movieInfoStream.maxReconnectBackoff:30s}") Duration maxReconnectBackoff) {
+        return new StreamBroadcaster<>("movieInfo", movieInfoRestClient.retrieveMovieInfoStream(),
+                replayHistory, replayTtl, subscriberBufferSize, minReconnectBackoff, maxReconnectBackoff, meterRegistry);
+    }
+}
@@ -1,15 +1,68 @@
 package com.reactivespring.config;
 
+import io.netty.channel.ChannelOption;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
 @Configuration
+@EnableConfigurationProperties(RestClientProperties.class)
 public class WebClientConfiguration {
 
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider movieInfoConnectionProvider(RestClientProperties properties){
+        return connectionProvider("moviesInfo", properties.getMoviesInfo().getPool());
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider reviewsConnectionProvider(RestClientProperties properties){
+        return connectionProvider("reviews", properties.getReviews().getPool());
+    }
+
+    @Bean
+    public WebClient movieInfoWebClient(WebClient.Builder builder, RestClientProperties properties){
+        var pool = properties.getMoviesInfo().getPool();
+        return builder
+                .clientConnector(new ReactorClientHttpConnector(httpClient(movieInfoConnectionProvider(properties), pool)))
+                .build();
+    }
+
     @Bean
-    public WebClient webClient(WebClient.Builder builder){
-        return builder.build();
+    public WebClient reviewsWebClient(WebClient.Builder builder, RestClientProperties properties){
+        var pool = properties.getReviews().getPool();
+        return builder
+                .clientConnector(new ReactorClientHttpConnector(httpClient(reviewsConnectionProvider(properties), pool)))
+                .build();
+    }
+
+    private ConnectionProvider connectionProvider(String name, RestClientProperties.Pool pool){
+        return ConnectionProvider.builder(name)
+                .maxConnections(pool.getMaxConnections())
+                .pendingAcquireMaxCount(pool.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(pool.getPendingAcquireTimeout())
+                .maxIdleTime(pool.getMaxIdleTime())
+                .maxLifeTime(pool.getMaxLifeTime())
+                .evictInBackground(pool.getEvictInBackground())
+                .metrics(true)
+                .build();
+    }
+
+    private HttpClient httpClient(ConnectionProvider connectionProvider, RestClientProperties.Pool pool){
+        var httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) pool.getConnectTimeout().toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, pool.isKeepAlive())
+                .keepAlive(pool.isKeepAlive())
+                .responseTimeout(pool.getResponseTimeout());
+
+        if (pool.isH2c()) {
+            return httpClient.protocol(HttpProtocol.H2C, HttpProtocol.HTTP11);
+        }
+        return httpClient;
     }
 
 }
@@ -1,14 +1,28 @@
 package com.reactivespring.controller;
 
+import com.reactivespring.cache.MovieInfoCache;
+import com.reactivespring.cache.ReviewsCache;
 import com.reactivespring.client.MovieInfoRestClient;
 import com.reactivespring.client.ReviewsRestClient;
 import com.reactivespring.domain.Movie;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.domain.Review;
+import com.reactivespring.util.StreamBroadcaster;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/v1/movies")
@@ -17,19 +31,100 @@ public class MovieController {
 
     private final ReviewsRestClient reviewsRestClient;
     private final MovieInfoRestClient movieInfoRestClient;
+    private final MovieInfoCache movieInfoCache;
+    private final ReviewsCache reviewsCache;
+    private final StreamBroadcaster<MovieInfoEvent> movieInfoStream;
+
+    @Value("${movies.reviewsLatencyBudget:0ms}")
+    private Duration reviewsLatencyBudget;
 
     @GetMapping("/{id}")
     public Mono<Movie> retrieveMovieById(@PathVariable(name = "id") String id){
+        if (!reviewsLatencyBudget.isZero()) {
+            return retrieveMovieWithinBudget(id);
+        }
+
+        var reviewsMono = reviewsRestClient.retrieveReviews(id)
+                .collectList();
+
+        // both calls are subscribed at once; an error or empty movie info cancels the reviews call
+        return movieInfoCache.retrieveMovieInfo(id)
+                .zipWith(reviewsMono, Movie::new);
+    }
+
+    private Mono<Movie> retrieveMovieWithinBudget(String id){
+        return Mono.defer(() -> {
+            // the reviews call is not tied to this request, so a late result still lands in the cache;
+            // a failed one degrades like a late one instead of failing the movie
+            var reviews = Sinks.<Optional<List<Review>>>one();
+            var reviewsCall = reviewsRestClient.retrieveReviews(id)
+                    .collectList()
+                    .doOnNext(reviewList -> reviewsCache.put(id, reviewList))
+                    .subscribe(reviewList -> reviews.tryEmitValue(Optional.of(reviewList)),
+                            ex -> reviews.tryEmitValue(Optional.empty()));
+
+            var reviewsWithinBudget = reviews.asMono()
+                    .timeout(reviewsLatencyBudget, Mono.just(Optional.<List<Review>>empty()));
+
+            return movieInfoCache.retrieveMovieInfo(id)
+                    .doOnError(ex -> reviewsCall.dispose())
+                    .switchIfEmpty(Mono.fromRunnable(reviewsCall::dispose))
+                    .zipWith(reviewsWithinBudget, (movieInfo, reviewList) -> reviewList
+                            .or(() -> reviewsCache.get(id))
+                            .map(list -> new Movie(movieInfo, list))
+                            .orElseGet(() -> new Movie(movieInfo, List.of(), true)));
+        });
+    }
+
+    @GetMapping(params = "ids", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Movie> retrieveMoviesByIds(@RequestParam(name = "ids") List<String> ids){
+        var movieIds = ids.stream()
+                .distinct()
+                .collect(Collectors.toList());
+
+        // a movie goes out as soon as both its info and all of its reviews are in
+        return Flux.defer(() -> {
+            var movieInfos = new HashMap<String, MovieInfo>();
+            var reviews = new HashMap<String, List<Review>>();
+            return Flux.<Object>merge(
+                            movieInfoRestClient.retrieveMovieInfos(movieIds),
+                            reviewsRestClient.retrieveReviewsByMovieInfoId(movieIds))
+                    .<Movie>handle((result, sink) -> {
+                        // merge hands over one element at a time, so the maps need no locking
+                        if (result instanceof MovieInfo) {
+                            var movieInfo = (MovieInfo) result;
+                            var reviewList = reviews.remove(movieInfo.getMovieInfoId());
+                            if (reviewList == null) {
+                                movieInfos.put(movieInfo.getMovieInfoId(), movieInfo);
+                            } else {
+                                sink.next(new Movie(movieInfo, reviewList));
+                            }
+                        } else {
+                            @SuppressWarnings("unchecked")
+                            var entry = (Map.Entry<String, List<Review>>) result;
+                            var movieInfo = movieInfos.remove(entry.getKey());
+                            if (movieInfo == null) {
+                                reviews.put(entry.getKey(), entry.getValue());
+                            } else {
+                                sink.next(new Movie(movieInfo, entry.getValue()));
+                            }
+                        }
+                    });
+        });
+    }
 
-        return movieInfoRestClient.retrieveMovieInfo(id)
-                .flatMap(movieInfo -> reviewsRestClient.retrieveReviews(id)
-                            .collectList()
-                            .map(reviews -> new Movie(movieInfo, reviews)
-                            ));
+    /**
+     * The MovieInfo followed by its reviews, one per line, without collecting the reviews first.
+     */
+    @GetMapping(value = "/{id}/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Object> retrieveMovieStreamById(@PathVariable(name = "id") String id){
+        return movieInfoCache.retrieveMovieInfo(id)
+                .flatMapMany(movieInfo -> Flux.<Object>just(movieInfo)
+                        .concatWith(reviewsRestClient.streamReviews(id)));
     }
 
     @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
-    public Flux<MovieInfo> retrieveMovieInfos(){
-        return movieInfoRestClient.retrieveMovieInfoStream();
+    public Flux<MovieInfoEvent> retrieveMovieInfos(){
+        return movieInfoStream.asFlux();
     }
 }
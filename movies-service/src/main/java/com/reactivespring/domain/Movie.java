@@ -14,4 +14,10 @@ public class Movie {
 
     private MovieInfo movieInfo;
     private List<Review> reviewList;
+    // set when reviews did not arrive within the latency budget and were left out
+    private boolean reviewsOmitted;
+
+    public Movie(MovieInfo movieInfo, List<Review> reviewList) {
+        this(movieInfo, reviewList, false);
+    }
 }
@@ -0,0 +1,103 @@
+package com.reactivespring.util;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Collects the keys requested within a short window (or until the batch is full),
+ * issues one bulk call for all of them and hands each waiting caller its own values.
+ */
+@Slf4j
+public class RequestBatcher<K, V> {
+
+    private final Function<List<K>, Flux<V>> bulkCall;
+    private final Function<V, K> keyExtractor;
+    private final Predicate<Throwable> isolateKeysOn;
+    private final Sinks.Many<PendingRequest<K, V>> pendingRequests = Sinks.many().unicast().onBackpressureBuffer();
+
+    public RequestBatcher(int maxBatchSize, Duration maxDelay,
+                          Function<List<K>, Flux<V>> bulkCall, Function<V, K> keyExtractor) {
+        this(maxBatchSize, maxDelay, bulkCall, keyExtractor, ex -> false);
+    }
+
+    /**
+     * A bulk call failing with an error matching {@code isolateKeysOn} (say a 400 caused by one
+     * malformed key) is retried one key at a time, so only the callers of the bad key see it.
+     */
+    public RequestBatcher(int maxBatchSize, Duration maxDelay,
+                          Function<List<K>, Flux<V>> bulkCall, Function<V, K> keyExtractor,
+                          Predicate<Throwable> isolateKeysOn) {
+        this.bulkCall = bulkCall;
+        this.keyExtractor = keyExtractor;
+        this.isolateKeysOn = isolateKeysOn;
+        // callers wait in the unicast sink while bulk calls are in flight, not in an overflowing buffer
+        DemandBatcher.batch(pendingRequests.asFlux(), maxBatchSize, maxDelay)
+                .flatMap(this::dispatch)
+                .subscribe();
+    }
+
+    public Mono<List<V>> load(K key) {
+        return Mono.create(sink -> {
+            var request = new PendingRequest<K, V>(key, sink);
+            Sinks.EmitResult result;
+            while ((result = pendingRequests.tryEmitNext(request)) == Sinks.EmitResult.FAIL_NON_SERIALIZED) {
+                Thread.onSpinWait();
+            }
+            if (result.isFailure()) {
+                sink.error(new IllegalStateException("Could not queue request for " + key + ": " + result));
+            }
+        });
+    }
+
+    private Mono<Void> dispatch(List<PendingRequest<K, V>> batch) {
+        var keys = batch.stream()
+                .map(request -> request.key)
+                .distinct()
+                .collect(Collectors.toList());
+        log.debug("Dispatching batch of {} keys for {} callers", keys.size(), batch.size());
+
+        return bulkCall.apply(keys)
+                .collectMultimap(keyExtractor)
+                .doOnNext(valuesByKey -> batch.forEach(request ->
+                        request.sink.success(new ArrayList<>(valuesByKey.getOrDefault(request.key, List.of())))))
+                .onErrorResume(ex -> keys.size() > 1 && isolateKeysOn.test(ex), ex -> {
+                    log.debug("Bulk call for {} keys failed, retrying them one at a time", keys.size(), ex);
+                    return Flux.fromIterable(batch.stream()
+                                    .collect(Collectors.groupingBy(request -> request.key, LinkedHashMap::new, Collectors.toList()))
+                                    .values())
+                            .flatMap(this::dispatch)
+                            .then(Mono.empty());
+                })
+                .doOnError(ex -> batch.forEach(request -> request.sink.error(ex)))
+                .onErrorResume(ex -> Mono.empty())
+                .then();
+    }
+
+    /**
+     * Stops taking requests. Those already queued are still dispatched; later loads fail.
+     */
+    public void dispose() {
+        pendingRequests.emitComplete((signalType, emitResult) -> emitResult == Sinks.EmitResult.FAIL_NON_SERIALIZED);
+    }
+
+    private static class PendingRequest<K, V> {
+        private final K key;
+        private final MonoSink<List<V>> sink;
+
+        private PendingRequest(K key, MonoSink<List<V>> sink) {
+            this.key = key;
+            this.sink = sink;
+        }
+    }
+}
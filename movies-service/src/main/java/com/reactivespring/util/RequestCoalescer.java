@@ -0,0 +1,124 @@
+package com.reactivespring.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight for downstream calls: callers asking for the same key while a call
+ * is in flight join that call (including its retries) instead of starting their own.
+ * Only single results are shared, so a joiner holds one value rather than a replay of
+ * a stream, and one that joins just as the call finishes gets its result instead of
+ * starting it again. The entry is dropped as soon as the call terminates or every
+ * caller cancels, which also cancels the call.
+ */
+public class RequestCoalescer<K, V> {
+
+    private final ConcurrentMap<K, SharedCall> inFlight = new ConcurrentHashMap<>();
+    private final Counter coalescedCalls;
+
+    public RequestCoalescer(String name, MeterRegistry meterRegistry) {
+        this.coalescedCalls = Counter.builder("movies.client.coalesced.calls")
+                .description("Calls served by joining an in-flight downstream request")
+                .tag("client", name)
+                .register(meterRegistry);
+        Gauge.builder("movies.client.inflight.keys", inFlight, Map::size)
+                .description("Keys with a downstream request in flight")
+                .tag("client", name)
+                .register(meterRegistry);
+    }
+
+    public Mono<V> coalesce(K key, Supplier<Mono<V>> call) {
+        return Mono.defer(() -> {
+            while (true) {
+                var existing = inFlight.get(key);
+                if (existing != null) {
+                    if (existing.join()) {
+                        coalescedCalls.increment();
+                        return existing.result();
+                    }
+                    // every caller of that one cancelled, so start afresh
+                    inFlight.remove(key, existing);
+                    continue;
+                }
+
+                var started = new SharedCall(key);
+                started.join();
+                if (inFlight.putIfAbsent(key, started) == null) {
+                    started.connect(Mono.defer(call));
+                    return started.result();
+                }
+            }
+        });
+    }
+
+    public double getCoalescedCount() {
+        return coalescedCalls.count();
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    private final class SharedCall {
+        private final K key;
+        private final Sinks.One<V> result = Sinks.one();
+        private final Disposable.Swap connection = Disposables.swap();
+        // guarded by this
+        private int callers;
+        private boolean abandoned;
+
+        private SharedCall(K key) {
+            this.key = key;
+        }
+
+        private synchronized boolean join() {
+            if (abandoned) {
+                return false;
+            }
+            callers++;
+            return true;
+        }
+
+        private void connect(Mono<V> call) {
+            connection.update(call.subscribe(
+                    value -> {
+                        inFlight.remove(key, this);
+                        result.tryEmitValue(value);
+                    },
+                    error -> {
+                        inFlight.remove(key, this);
+                        result.tryEmitError(error);
+                    },
+                    () -> {
+                        inFlight.remove(key, this);
+                        result.tryEmitEmpty();
+                    }));
+        }
+
+        private Mono<V> result() {
+            return result.asMono()
+                    .doOnCancel(this::leave);
+        }
+
+        private void leave() {
+            synchronized (this) {
+                if (--callers > 0) {
+                    return;
+                }
+                abandoned = true;
+            }
+            inFlight.remove(key, this);
+            connection.dispose();
+        }
+    }
+}
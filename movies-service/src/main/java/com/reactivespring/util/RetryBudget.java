@@ -0,0 +1,54 @@
+package com.reactivespring.util;
+
+import com.reactivespring.config.RestClientProperties;
+
+import java.time.Duration;
+
+/**
+ * Caps retries to a percentage of the requests seen in the current window, plus a small
+ * floor so that a quiet client can still retry. Once the budget is spent, failures are
+ * returned to the caller instead of amplifying the load on a struggling downstream.
+ */
+public class RetryBudget {
+
+    private final double retryRatio;
+    private final long minRetriesPerWindow;
+    private final long windowNanos;
+
+    private long windowStart = System.nanoTime();
+    private long requests;
+    private long retries;
+
+    public RetryBudget(double retryPercent, long minRetriesPerWindow, Duration window) {
+        this.retryRatio = retryPercent / 100;
+        this.minRetriesPerWindow = minRetriesPerWindow;
+        this.windowNanos = window.toNanos();
+    }
+
+    public RetryBudget(RestClientProperties.RetryPolicy retryPolicy) {
+        this(retryPolicy.getBudgetPercent(), retryPolicy.getMinRetriesPerWindow(), retryPolicy.getBudgetWindow());
+    }
+
+    public synchronized void recordRequest() {
+        rollWindow();
+        requests++;
+    }
+
+    public synchronized boolean tryAcquireRetry() {
+        rollWindow();
+        if (retries >= minRetriesPerWindow + (long) (requests * retryRatio)) {
+            return false;
+        }
+        retries++;
+        return true;
+    }
+
+    private void rollWindow() {
+        var now = System.nanoTime();
+        if (now - windowStart >= windowNanos) {
+            windowStart = now;
+            requests = 0;
+            retries = 0;
+        }
+    }
+}
@@ -1,20 +1,62 @@
 package com.reactivespring.util;
 
+import com.reactivespring.config.RestClientProperties;
 import com.reactivespring.exception.MoviesInfoServerException;
 import com.reactivespring.exception.ReviewsServerException;
-import reactor.core.Exceptions;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
 import reactor.util.retry.Retry;
 
 import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
 
+@Slf4j
 public class RetryUtil {
 
-    public static Retry getRetrySpec() {
-        return Retry.fixedDelay(3, Duration.ofSeconds(1))
-                .filter(ex -> ex instanceof MoviesInfoServerException ||
-                        ex instanceof ReviewsServerException)
-                .onRetryExhaustedThrow((retryBackoffSpec, retrySignal) ->
-                        Exceptions.propagate(retrySignal.failure())
-                );
+    public static Retry getRetrySpec(RestClientProperties.RetryPolicy retryPolicy, RetryBudget retryBudget) {
+        return getRetrySpec(retryPolicy, retryBudget, retryPolicy.getDeadline());
+    }
+
+    // long-lived streams are not bound by the per-request deadline
+    public static Retry getStreamRetrySpec(RestClientProperties.RetryPolicy retryPolicy, RetryBudget retryBudget) {
+        return getRetrySpec(retryPolicy, retryBudget, null);
+    }
+
+    private static Retry getRetrySpec(RestClientProperties.RetryPolicy retryPolicy, RetryBudget retryBudget, Duration deadline) {
+        return Retry.from(retrySignals -> {
+            var deadlineNanos = deadline == null ? Long.MAX_VALUE : System.nanoTime() + deadline.toNanos();
+
+            return retrySignals.concatMap(retrySignal -> {
+                var failure = retrySignal.failure();
+                // a stream that delivered data since its last failure starts counting afresh
+                var attempt = retrySignal.totalRetriesInARow();
+                if (!isRetryable(failure) || attempt >= retryPolicy.getMaxAttempts()) {
+                    return Mono.error(failure);
+                }
+
+                var delay = fullJitterBackoff(retryPolicy, attempt);
+                if (deadlineNanos - System.nanoTime() < delay.toNanos()) {
+                    log.warn("Not retrying after attempt {} : deadline would be exceeded", attempt + 1);
+                    return Mono.error(failure);
+                }
+                if (!retryBudget.tryAcquireRetry()) {
+                    log.warn("Not retrying after attempt {} : retry budget exhausted", attempt + 1);
+                    return Mono.error(failure);
+                }
+                return Mono.delay(delay);
+            });
+        });
+    }
+
+    private static boolean isRetryable(Throwable ex) {
+        return ex instanceof MoviesInfoServerException ||
+                ex instanceof ReviewsServerException;
+    }
+
+    static Duration fullJitterBackoff(RestClientProperties.RetryPolicy retryPolicy, long attempt) {
+        var firstBackoff = retryPolicy.getFirstBackoff().toMillis();
+        var maxBackoff = retryPolicy.getMaxBackoff().toMillis();
+        var ceiling = Math.min(maxBackoff, firstBackoff << Math.min(attempt, 30));
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceiling + 1));
     }
 }
@@ -0,0 +1,79 @@
+package com.reactivespring.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Multicasts one upstream subscription to any number of local subscribers.
+ * The upstream is reconnected with backoff when it completes or fails, late subscribers
+ * get the last {@code replayHistory} elements, and each subscriber reads through its own
+ * bounded buffer that drops its oldest elements rather than holding back the others.
+ */
+@Slf4j
+public class StreamBroadcaster<T> {
+
+    private final Flux<T> shared;
+    private final int subscriberBufferSize;
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final Counter upstreamConnects;
+    private final Counter droppedElements;
+
+    public StreamBroadcaster(String name, Flux<T> upstream, int replayHistory, Duration replayTtl,
+                             int subscriberBufferSize, Duration minReconnectBackoff, Duration maxReconnectBackoff,
+                             MeterRegistry meterRegistry) {
+        this.subscriberBufferSize = subscriberBufferSize;
+        this.upstreamConnects = Counter.builder("movies.stream.upstream.connects")
+                .description("Subscriptions made to the upstream stream, including reconnects")
+                .tag("stream", name)
+                .register(meterRegistry);
+        this.droppedElements = Counter.builder("movies.stream.dropped")
+                .description("Elements dropped from a slow subscriber's buffer")
+                .tag("stream", name)
+                .register(meterRegistry);
+        Gauge.builder("movies.stream.subscribers", subscribers, AtomicInteger::get)
+                .description("Local subscribers sharing the upstream stream")
+                .tag("stream", name)
+                .register(meterRegistry);
+
+        var reconnecting = upstream
+                .doOnSubscribe(subscription -> upstreamConnects.increment())
+                .repeatWhen(completed -> completed.delayElements(minReconnectBackoff))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, minReconnectBackoff)
+                        .maxBackoff(maxReconnectBackoff)
+                        .transientErrors(true)
+                        .doBeforeRetry(retrySignal -> log.warn("Reconnecting to {} stream : {}",
+                                name, retrySignal.failure().getMessage())));
+
+        this.shared = replayHistory > 0
+                ? reconnecting.replay(replayHistory, replayTtl).refCount()
+                : reconnecting.publish().refCount();
+    }
+
+    public Flux<T> asFlux() {
+        return shared
+                .onBackpressureBuffer(subscriberBufferSize, dropped -> droppedElements.increment(),
+                        BufferOverflowStrategy.DROP_OLDEST)
+                .doOnSubscribe(subscription -> subscribers.incrementAndGet())
+                .doFinally(signalType -> subscribers.decrementAndGet());
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.get();
+    }
+
+    public double getUpstreamConnectCount() {
+        return upstreamConnects.count();
+    }
+
+    public double getDroppedCount() {
+        return droppedElements.count();
+    }
+}
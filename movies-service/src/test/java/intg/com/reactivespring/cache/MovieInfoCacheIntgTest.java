@@ -0,0 +1,76 @@
+package com.reactivespring.cache;
+
+import com.reactivespring.domain.Movie;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import wiremock.org.apache.http.protocol.HTTP;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+@AutoConfigureWireMock(port = 8084)
+@TestPropertySource(
+        properties = {
+                "restClient.moviesInfoUrl: http://localhost:8084/v1/movieinfos",
+                "restClient.reviewsUrl: http://localhost:8084/v1/reviews",
+                "restClient.movieInfoCache.enabled: true"
+        }
+)
+public class MovieInfoCacheIntgTest {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void getMoviesById_movieInfoServedFromCache(){
+        //given
+        String movieId = "2";
+        stubFor(get(urlEqualTo("/v1/movieinfos".concat("/").concat(movieId)))
+                .willReturn(aResponse()
+                        .withHeader(HTTP.CONTENT_TYPE, "Application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader(HTTP.CONTENT_TYPE, "Application/json")
+                        .withBodyFile("reviews.json")));
+
+        //when
+        for (int i = 0; i < 3; i++) {
+            webTestClient
+                    .get()
+                    .uri("/v1/movies/{id}", movieId)
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody(Movie.class)
+                    .consumeWith(movieEntityExchangeResult -> {
+                        var movie = movieEntityExchangeResult.getResponseBody();
+                        assert movie != null;
+                        assert movie.getMovieInfo().getName().equals("Batman Begins");
+                    });
+        }
+
+        //then
+        verify(1, getRequestedFor(urlEqualTo("/v1/movieinfos".concat("/").concat(movieId))));
+        verify(3, getRequestedFor(urlPathEqualTo("/v1/reviews")));
+
+        var hits = meterRegistry.get("cache.gets")
+                .tag("cache", "movieInfo")
+                .tag("result", "hit")
+                .functionCounter()
+                .count();
+        assert hits >= 2;
+    }
+}
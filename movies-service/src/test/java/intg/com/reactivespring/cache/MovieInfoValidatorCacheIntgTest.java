@@ -0,0 +1,84 @@
+package com.reactivespring.cache;
+
+import com.reactivespring.domain.Movie;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import wiremock.org.apache.http.protocol.HTTP;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+@AutoConfigureWireMock(port = 8084)
+@TestPropertySource(
+        properties = {
+                "restClient.moviesInfoUrl: http://localhost:8084/v1/movieinfos",
+                "restClient.reviewsUrl: http://localhost:8084/v1/reviews",
+                "restClient.movieInfoCache.enabled: false"
+        }
+)
+public class MovieInfoValidatorCacheIntgTest {
+
+    private static final String ETAG = "\"5d41402abc4b2a76b9719d911017c592\"";
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void getMoviesById_movieInfoRevalidatedWithETag(){
+        //given
+        String movieId = "3";
+        String movieInfoUrl = "/v1/movieinfos".concat("/").concat(movieId);
+        stubFor(get(urlEqualTo(movieInfoUrl))
+                .willReturn(aResponse()
+                        .withHeader(HTTP.CONTENT_TYPE, "Application/json")
+                        .withHeader("ETag", ETAG)
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlEqualTo(movieInfoUrl))
+                .withHeader("If-None-Match", equalTo(ETAG))
+                .willReturn(aResponse()
+                        .withStatus(304)
+                        .withHeader("ETag", ETAG)));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader(HTTP.CONTENT_TYPE, "Application/json")
+                        .withBodyFile("reviews.json")));
+
+        //when
+        for (int i = 0; i < 3; i++) {
+            webTestClient
+                    .get()
+                    .uri("/v1/movies/{id}", movieId)
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody(Movie.class)
+                    .consumeWith(movieEntityExchangeResult -> {
+                        var movie = movieEntityExchangeResult.getResponseBody();
+                        assert movie != null;
+                        assert movie.getMovieInfo().getName().equals("Batman Begins");
+                    });
+        }
+
+        //then
+        verify(3, getRequestedFor(urlEqualTo(movieInfoUrl)));
+        verify(2, getRequestedFor(urlEqualTo(movieInfoUrl)).withHeader("If-None-Match", equalTo(ETAG)));
+
+        var notModified = meterRegistry.get("movieinfo.client.not.modified")
+                .counter()
+                .count();
+        assert notModified >= 2;
+    }
+}
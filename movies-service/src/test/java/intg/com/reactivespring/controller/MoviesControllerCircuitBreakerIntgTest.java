@@ -0,0 +1,163 @@
+package com.reactivespring.controller;
+
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.http.Fault;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import wiremock.org.apache.http.HttpStatus;
+import wiremock.org.apache.http.protocol.HTTP;
+
+import java.time.Duration;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+@AutoConfigureWireMock(port = 8084)
+@TestPropertySource(
+        properties = {
+                "restClient.moviesInfoUrl: http://localhost:8084/v1/movieinfos",
+                "restClient.reviewsUrl: http://localhost:8084/v1/reviews",
+                "restClient.movieInfoCache.enabled: false",
+                "restClient.moviesInfo.circuitBreaker.slidingWindowSize: 4",
+                "restClient.moviesInfo.circuitBreaker.minimumNumberOfCalls: 4",
+                "restClient.moviesInfo.circuitBreaker.waitDurationInOpenState: 60s",
+                "restClient.reviews.circuitBreaker.slidingWindowSize: 4",
+                "restClient.reviews.circuitBreaker.minimumNumberOfCalls: 4",
+                "restClient.reviews.circuitBreaker.slowCallDurationThreshold: 100ms",
+                "restClient.reviews.pool.responseTimeout: 1s"
+        }
+)
+public class MoviesControllerCircuitBreakerIntgTest {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @Autowired
+    @Qualifier("movieInfoCircuitBreaker")
+    CircuitBreaker movieInfoCircuitBreaker;
+
+    @Autowired
+    @Qualifier("reviewsCircuitBreaker")
+    CircuitBreaker reviewsCircuitBreaker;
+
+    @Autowired
+    @Qualifier("reviewsStreamCircuitBreaker")
+    CircuitBreaker reviewsStreamCircuitBreaker;
+
+    @Test
+    void getMoviesById_movieInfoFaults_openCircuitFailsFast(){
+        //given
+        String movieId = "1";
+        stubFor(get(urlEqualTo("/v1/movieinfos".concat("/").concat(movieId)))
+                .willReturn(aResponse()
+                        .withFault(Fault.CONNECTION_RESET_BY_PEER)));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader(HTTP.CONTENT_TYPE, "Application/json")
+                        .withBodyFile("reviews.json")));
+
+        //when
+        for (int i = 0; i < 4; i++) {
+            webTestClient
+                    .get()
+                    .uri("/v1/movies/{id}", movieId)
+                    .exchange()
+                    .expectStatus().is5xxServerError();
+        }
+
+        //then
+        assert movieInfoCircuitBreaker.getState() == CircuitBreaker.State.OPEN;
+
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}", movieId)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.SC_SERVICE_UNAVAILABLE);
+
+        WireMock.verify(4, getRequestedFor(urlEqualTo("/v1/movieinfos".concat("/").concat(movieId))));
+    }
+
+    @Test
+    void getMovieStreamById_longStreamsLeaveReviewsCircuitClosed(){
+        //given
+        String movieId = "1";
+        stubFor(get(urlEqualTo("/v1/movieinfos".concat("/").concat(movieId)))
+                .willReturn(aResponse()
+                        .withHeader(HTTP.CONTENT_TYPE, "Application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .withHeader("Accept", equalTo(MediaType.APPLICATION_NDJSON_VALUE))
+                .willReturn(aResponse()
+                        .withHeader(HTTP.CONTENT_TYPE, MediaType.APPLICATION_NDJSON_VALUE)
+                        .withFixedDelay(300)
+                        .withBody("{\"reviewId\":\"1\",\"movieInfoId\":1,\"comment\":\"Awesome Movie\",\"rating\":9.0}\n")));
+
+        //when
+        for (int i = 0; i < 4; i++) {
+            webTestClient
+                    .get()
+                    .uri("/v1/movies/{id}/stream", movieId)
+                    .accept(MediaType.APPLICATION_NDJSON)
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody(String.class);
+        }
+
+        //then
+        assert reviewsCircuitBreaker.getMetrics().getNumberOfBufferedCalls() == 0;
+        assert reviewsStreamCircuitBreaker.getMetrics().getNumberOfBufferedCalls() == 4;
+        assert reviewsStreamCircuitBreaker.getMetrics().getNumberOfSlowCalls() == 0;
+        assert reviewsStreamCircuitBreaker.getState() == CircuitBreaker.State.CLOSED;
+    }
+
+    @Test
+    void getMovieStreamById_sparseStreamOutlivesResponseTimeout(){
+        //given
+        String movieId = "1";
+        stubFor(get(urlEqualTo("/v1/movieinfos".concat("/").concat(movieId)))
+                .willReturn(aResponse()
+                        .withHeader(HTTP.CONTENT_TYPE, "Application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        // the second review arrives well after the pool's 1s response timeout
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .withHeader("Accept", equalTo(MediaType.APPLICATION_NDJSON_VALUE))
+                .willReturn(aResponse()
+                        .withHeader(HTTP.CONTENT_TYPE, MediaType.APPLICATION_NDJSON_VALUE)
+                        .withChunkedDribbleDelay(2, 3000)
+                        .withBody("{\"reviewId\":\"1\",\"movieInfoId\":1,\"comment\":\"Awesome Movie\",\"rating\":9.0}\n"
+                                + "{\"reviewId\":\"2\",\"movieInfoId\":1,\"comment\":\"Excellent Movie\",\"rating\":8.0}\n")));
+
+        //when
+        var body = webTestClient
+                .mutate()
+                .responseTimeout(Duration.ofSeconds(10))
+                .build()
+                .get()
+                .uri("/v1/movies/{id}/stream", movieId)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+
+        //then
+        assert body != null;
+        assert body.contains("Awesome Movie");
+        assert body.contains("Excellent Movie");
+    }
+}
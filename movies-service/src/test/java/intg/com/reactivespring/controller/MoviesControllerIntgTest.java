@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
 import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
@@ -23,7 +24,8 @@ import static com.github.tomakehurst.wiremock.client.WireMock.*;
 @TestPropertySource(
         properties = {
                 "restClient.moviesInfoUrl: http://localhost:8084/v1/movieinfos",
-                "restClient.reviewsUrl: http://localhost:8084/v1/reviews"
+                "restClient.reviewsUrl: http://localhost:8084/v1/reviews",
+                "restClient.movieInfoCache.enabled: false"
         }
 )
 
@@ -63,6 +65,119 @@ public class MoviesControllerIntgTest {
 
         }
 
+    @Test
+    void getMoviesById_downstreamCallsRunConcurrently(){
+        //given
+        String movieId = "1";
+        stubFor(get(urlEqualTo("/v1/movieinfos".concat("/").concat(movieId)))
+                .willReturn(aResponse()
+                        .withHeader(HTTP.CONTENT_TYPE, "Application/json")
+                        .withBodyFile("movieinfo.json")
+                        .withFixedDelay(1000)));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader(HTTP.CONTENT_TYPE, "Application/json")
+                        .withBodyFile("reviews.json")
+                        .withFixedDelay(1000)));
+
+        //when
+        var start = System.currentTimeMillis();
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}", movieId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Movie.class)
+                .consumeWith(movieEntityExchangeResult -> {
+                    var movie = movieEntityExchangeResult.getResponseBody();
+                    assert movie != null;
+                    assert movie.getReviewList().size() == 2;
+                });
+        var elapsed = System.currentTimeMillis() - start;
+
+        //then
+        // sequential calls would take at least 2000 ms
+        assert elapsed < 1800 : "expected ~max(info, reviews) but took " + elapsed + " ms";
+    }
+
+    @Test
+    void getMoviesByIds(){
+        //given
+        stubFor(get(urlPathEqualTo("/v1/movieinfos"))
+                .withQueryParam("ids", equalTo("1,2"))
+                .willReturn(aResponse()
+                        .withHeader(HTTP.CONTENT_TYPE, "Application/json")
+                        .withBody("[" +
+                                "{\"movieInfoId\":\"1\",\"name\":\"Batman Begins\",\"year\":2005,\"cast\":[\"Christian Bale\"]}," +
+                                "{\"movieInfoId\":\"2\",\"name\":\"The Dark Knight\",\"year\":2008,\"cast\":[\"Christian Bale\"]}" +
+                                "]")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .withQueryParam("movieInfoIds", equalTo("1,2"))
+                .willReturn(aResponse()
+                        .withHeader(HTTP.CONTENT_TYPE, "Application/json")
+                        .withBodyFile("reviews.json")));
+
+        //when
+        var movies = webTestClient
+                .get()
+                .uri(uriBuilder -> uriBuilder.path("/v1/movies")
+                        .queryParam("ids", "1,2,1")
+                        .build())
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(Movie.class)
+                .getResponseBody()
+                .collectMap(movie -> movie.getMovieInfo().getMovieInfoId())
+                .block();
+
+        //then
+        assert movies != null;
+        assert movies.size() == 2;
+        assert movies.get("1").getReviewList().size() == 2;
+        assert movies.get("2").getReviewList().isEmpty();
+        WireMock.verify(1, getRequestedFor(urlPathEqualTo("/v1/movieinfos")));
+        WireMock.verify(1, getRequestedFor(urlPathEqualTo("/v1/reviews")));
+    }
+
+    @Test
+    void getMovieStreamById(){
+        //given
+        String movieId = "1";
+        stubFor(get(urlEqualTo("/v1/movieinfos" + "/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader(HTTP.CONTENT_TYPE, "Application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .withHeader("Accept", equalTo(MediaType.APPLICATION_NDJSON_VALUE))
+                .willReturn(aResponse()
+                        .withHeader(HTTP.CONTENT_TYPE, MediaType.APPLICATION_NDJSON_VALUE)
+                        .withBody("{\"reviewId\":\"1\",\"movieInfoId\":1,\"comment\":\"Awesome Movie\",\"rating\":9.0}\n" +
+                                "{\"reviewId\":\"2\",\"movieInfoId\":1,\"comment\":\"Excellent Movie\",\"rating\":8.0}\n")));
+
+        //when
+        var lines = webTestClient
+                .get()
+                .uri("/v1/movies/{id}/stream", movieId)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(String.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        //then
+        assert lines != null;
+        assert lines.size() == 3;
+        assert lines.get(0).contains("Batman Begins");
+        assert lines.get(1).contains("Awesome Movie");
+        assert lines.get(2).contains("Excellent Movie");
+    }
+
     @Test
     void getMoviesById_movieInfo_404(){
         //given
@@ -0,0 +1,141 @@
+package com.reactivespring.controller;
+
+import com.reactivespring.domain.Movie;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import wiremock.org.apache.http.protocol.HTTP;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+@AutoConfigureWireMock(port = 8084)
+@TestPropertySource(
+        properties = {
+                "restClient.moviesInfoUrl: http://localhost:8084/v1/movieinfos",
+                "restClient.reviewsUrl: http://localhost:8084/v1/reviews",
+                "restClient.movieInfoCache.enabled: false",
+                "movies.reviewsLatencyBudget: 200ms"
+        }
+)
+public class MoviesControllerLatencyBudgetIntgTest {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @Test
+    void retrieveMovieById_slowReviews_partialThenCached() throws InterruptedException {
+        //given
+        var movieId = "abc";
+        stubFor(get(urlEqualTo("/v1/movieinfos" + "/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader(HTTP.CONTENT_TYPE, "Application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader(HTTP.CONTENT_TYPE, "Application/json")
+                        .withBodyFile("reviews.json")
+                        .withFixedDelay(1000)));
+
+        //when
+        var partial = webTestClient
+                .get()
+                .uri("/v1/movies/{id}", movieId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Movie.class)
+                .returnResult()
+                .getResponseBody();
+
+        //then
+        assert partial != null;
+        assertEquals("Batman Begins", partial.getMovieInfo().getName());
+        assertTrue(partial.isReviewsOmitted());
+        assertEquals(0, partial.getReviewList().size());
+
+        // the reviews call keeps running after the partial response and fills the cache
+        Thread.sleep(1500);
+
+        var cached = webTestClient
+                .get()
+                .uri("/v1/movies/{id}", movieId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Movie.class)
+                .returnResult()
+                .getResponseBody();
+
+        assert cached != null;
+        assertFalse(cached.isReviewsOmitted());
+        assertEquals(2, cached.getReviewList().size());
+    }
+
+    @Test
+    void retrieveMovieById_fastReviews_notOmitted() {
+        //given
+        var movieId = "def";
+        stubFor(get(urlEqualTo("/v1/movieinfos" + "/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader(HTTP.CONTENT_TYPE, "Application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader(HTTP.CONTENT_TYPE, "Application/json")
+                        .withBodyFile("reviews.json")));
+
+        //when
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}", movieId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Movie.class)
+                .consumeWith(movieEntityExchangeResult -> {
+                    var movie = movieEntityExchangeResult.getResponseBody();
+                    assert movie != null;
+                    assertFalse(movie.isReviewsOmitted());
+                    assertEquals(2, movie.getReviewList().size());
+                });
+    }
+
+    @Test
+    void retrieveMovieById_failedReviews_omittedInsteadOfFailing() {
+        //given
+        var movieId = "ghi";
+        stubFor(get(urlEqualTo("/v1/movieinfos" + "/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader(HTTP.CONTENT_TYPE, "Application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withStatus(400)
+                        .withBody("Invalid movieInfoId")));
+
+        //when
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}", movieId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Movie.class)
+                .consumeWith(movieEntityExchangeResult -> {
+                    var movie = movieEntityExchangeResult.getResponseBody();
+                    assert movie != null;
+                    assertEquals("Batman Begins", movie.getMovieInfo().getName());
+                    assertTrue(movie.isReviewsOmitted());
+                });
+    }
+}
@@ -0,0 +1,140 @@
+package com.reactivespring.util;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RequestBatcherTest {
+
+    @Test
+    void load_keysWithinWindowShareOneBulkCall(){
+        //given
+        var bulkCalls = new CopyOnWriteArrayList<List<String>>();
+        var batcher = new RequestBatcher<String, String>(64, Duration.ofMillis(50),
+                keys -> {
+                    bulkCalls.add(keys);
+                    return Flux.fromIterable(keys)
+                            .filter(key -> !key.equals("404"))
+                            .flatMapIterable(key -> List.of(key + ":a", key + ":b"));
+                },
+                value -> value.substring(0, value.indexOf(':')));
+
+        //when
+        var results = Flux.merge(
+                batcher.load("1"),
+                batcher.load("2"),
+                batcher.load("1"),
+                batcher.load("404"));
+
+        //then
+        StepVerifier.create(results.collectList())
+                .assertNext(values -> assertEquals(List.of(
+                        List.of("1:a", "1:b"),
+                        List.of("2:a", "2:b"),
+                        List.of("1:a", "1:b"),
+                        List.of()), values))
+                .verifyComplete();
+        assertEquals(List.of(List.of("1", "2", "404")), bulkCalls);
+        batcher.dispose();
+    }
+
+    @Test
+    void load_bulkCallErrorIsDeliveredToEveryCaller(){
+        //given
+        var batcher = new RequestBatcher<String, String>(2, Duration.ofSeconds(5),
+                keys -> Flux.error(new RuntimeException("Server Exception")),
+                value -> value);
+
+        //when
+        var results = Flux.merge(
+                batcher.load("1").onErrorResume(ex -> Mono.just(List.of(ex.getMessage()))),
+                batcher.load("2").onErrorResume(ex -> Mono.just(List.of(ex.getMessage()))));
+
+        //then
+        StepVerifier.create(results)
+                .expectNext(List.of("Server Exception"), List.of("Server Exception"))
+                .verifyComplete();
+        batcher.dispose();
+    }
+
+    @Test
+    void load_isolatedErrorOnlyFailsTheBadKey(){
+        //given
+        var bulkCalls = new CopyOnWriteArrayList<List<String>>();
+        var batcher = new RequestBatcher<String, String>(3, Duration.ofSeconds(5),
+                keys -> {
+                    bulkCalls.add(keys);
+                    return keys.contains("bad")
+                            ? Flux.error(new IllegalArgumentException("Malformed id"))
+                            : Flux.fromIterable(keys).map(key -> key + ":a");
+                },
+                value -> value.substring(0, value.indexOf(':')),
+                IllegalArgumentException.class::isInstance);
+
+        //when
+        var results = Flux.merge(
+                batcher.load("1").onErrorResume(ex -> Mono.just(List.of(ex.getMessage()))),
+                batcher.load("bad").onErrorResume(ex -> Mono.just(List.of(ex.getMessage()))),
+                batcher.load("2").onErrorResume(ex -> Mono.just(List.of(ex.getMessage()))));
+
+        //then
+        StepVerifier.create(results.collectList())
+                .assertNext(values -> assertEquals(List.of(
+                        List.of("1:a"),
+                        List.of("Malformed id"),
+                        List.of("2:a")), values))
+                .verifyComplete();
+        assertEquals(List.of("1", "bad", "2"), bulkCalls.get(0));
+        assertEquals(4, bulkCalls.size());
+        batcher.dispose();
+    }
+
+    @Test
+    void dispose_dispatchesQueuedRequestsAndRejectsNewOnes(){
+        //given
+        var batcher = new RequestBatcher<String, String>(64, Duration.ofSeconds(5),
+                keys -> Flux.fromIterable(keys).map(key -> key + ":a"),
+                value -> value.substring(0, value.indexOf(':')));
+        var queued = batcher.load("1").toFuture();
+
+        //when
+        batcher.dispose();
+
+        //then
+        assertEquals(List.of("1:a"), queued.join());
+        StepVerifier.create(batcher.load("2"))
+                .expectError(IllegalStateException.class)
+                .verify(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void load_callersQueueWhileBulkCallsAreSaturated(){
+        //given
+        var release = Sinks.<String>empty();
+        var batcher = new RequestBatcher<Integer, Integer>(1, Duration.ofMillis(10),
+                keys -> release.asMono().thenMany(Flux.fromIterable(keys)),
+                value -> value);
+
+        //when
+        // more batches than flatMap keeps in flight, all held until the release
+        var results = Flux.range(0, 300)
+                .flatMap(batcher::load, 300)
+                .collectList();
+
+        //then
+        StepVerifier.create(results)
+                .thenAwait(Duration.ofMillis(200))
+                .then(release::tryEmitEmpty)
+                .assertNext(values -> assertEquals(300, values.size()))
+                .verifyComplete();
+        batcher.dispose();
+    }
+}
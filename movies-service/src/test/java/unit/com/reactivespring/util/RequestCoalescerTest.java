@@ -0,0 +1,88 @@
+package com.reactivespring.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RequestCoalescerTest {
+
+    private final RequestCoalescer<String, String> coalescer = new RequestCoalescer<>("test", new SimpleMeterRegistry());
+
+    @Test
+    void coalesce_sharesInFlightCall(){
+        //given
+        var subscriptions = new AtomicInteger();
+        var call = Mono.fromSupplier(() -> "Batman Begins")
+                .doOnSubscribe(subscription -> subscriptions.incrementAndGet())
+                .delayElement(Duration.ofMillis(200));
+
+        //when
+        var results = Flux.merge(
+                coalescer.coalesce("1", () -> call),
+                coalescer.coalesce("1", () -> call),
+                coalescer.coalesce("1", () -> call));
+
+        //then
+        StepVerifier.create(results)
+                .expectNext("Batman Begins", "Batman Begins", "Batman Begins")
+                .verifyComplete();
+        assertEquals(1, subscriptions.get());
+        assertEquals(2.0, coalescer.getCoalescedCount());
+        assertEquals(0, coalescer.getInFlightCount());
+    }
+
+    @Test
+    void coalesce_sharesErrorAndReleasesKey(){
+        //given
+        var subscriptions = new AtomicInteger();
+        var call = Mono.<String>error(new RuntimeException("Server Exception"))
+                .doOnSubscribe(subscription -> subscriptions.incrementAndGet())
+                .delaySubscription(Duration.ofMillis(200));
+
+        //when
+        var results = Flux.merge(
+                coalescer.coalesce("1", () -> call).onErrorResume(ex -> Mono.just(ex.getMessage())),
+                coalescer.coalesce("1", () -> call).onErrorResume(ex -> Mono.just(ex.getMessage())));
+
+        //then
+        StepVerifier.create(results)
+                .expectNext("Server Exception", "Server Exception")
+                .verifyComplete();
+        assertEquals(1, subscriptions.get());
+        assertEquals(0, coalescer.getInFlightCount());
+
+        StepVerifier.create(coalescer.coalesce("1", () -> Mono.just("retried")))
+                .expectNext("retried")
+                .verifyComplete();
+    }
+
+    @Test
+    void coalesce_everyCallerCancellingCancelsTheCall(){
+        //given
+        var cancellations = new AtomicInteger();
+        var call = Mono.<String>never()
+                .doOnCancel(cancellations::incrementAndGet);
+
+        //when
+        var first = coalescer.coalesce("1", () -> call).subscribe();
+        var second = coalescer.coalesce("1", () -> call).subscribe();
+        first.dispose();
+
+        //then
+        assertEquals(0, cancellations.get());
+        second.dispose();
+        assertEquals(1, cancellations.get());
+        assertEquals(0, coalescer.getInFlightCount());
+
+        StepVerifier.create(coalescer.coalesce("1", () -> Mono.just("retried")))
+                .expectNext("retried")
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,126 @@
+package com.reactivespring.util;
+
+import com.reactivespring.config.RestClientProperties;
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.exception.MoviesInfoServerException;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetryUtilTest {
+
+    private final RestClientProperties.RetryPolicy retryPolicy = new RestClientProperties.RetryPolicy();
+
+    @Test
+    void fullJitterBackoff_staysWithinExponentialCeiling(){
+        retryPolicy.setFirstBackoff(Duration.ofMillis(100));
+        retryPolicy.setMaxBackoff(Duration.ofMillis(300));
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(RetryUtil.fullJitterBackoff(retryPolicy, 0).toMillis() <= 100);
+            assertTrue(RetryUtil.fullJitterBackoff(retryPolicy, 1).toMillis() <= 200);
+            assertTrue(RetryUtil.fullJitterBackoff(retryPolicy, 5).toMillis() <= 300);
+        }
+    }
+
+    @Test
+    void retrySpec_retriesServerErrorsUpToMaxAttempts(){
+        //given
+        retryPolicy.setFirstBackoff(Duration.ofMillis(10));
+        var attempts = new AtomicInteger();
+        var call = Mono.error(new MoviesInfoServerException("Server Exception"))
+                .doOnSubscribe(subscription -> attempts.incrementAndGet());
+
+        //when
+        var result = call.retryWhen(RetryUtil.getRetrySpec(retryPolicy, new RetryBudget(retryPolicy)));
+
+        //then
+        StepVerifier.create(result)
+                .expectError(MoviesInfoServerException.class)
+                .verify();
+        assertEquals(4, attempts.get());
+    }
+
+    @Test
+    void retrySpec_doesNotRetryClientErrors(){
+        //given
+        var attempts = new AtomicInteger();
+        var call = Mono.error(new MoviesInfoClientException("Not Found", 404))
+                .doOnSubscribe(subscription -> attempts.incrementAndGet());
+
+        //when
+        var result = call.retryWhen(RetryUtil.getRetrySpec(retryPolicy, new RetryBudget(retryPolicy)));
+
+        //then
+        StepVerifier.create(result)
+                .expectError(MoviesInfoClientException.class)
+                .verify();
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void retrySpec_stopsWhenBudgetIsExhausted(){
+        //given
+        retryPolicy.setFirstBackoff(Duration.ofMillis(10));
+        var retryBudget = new RetryBudget(0, 1, Duration.ofMinutes(1));
+        var attempts = new AtomicInteger();
+        var call = Mono.error(new MoviesInfoServerException("Server Exception"))
+                .doOnSubscribe(subscription -> attempts.incrementAndGet());
+
+        //when
+        var result = call.retryWhen(RetryUtil.getRetrySpec(retryPolicy, retryBudget));
+
+        //then
+        StepVerifier.create(result)
+                .expectError(MoviesInfoServerException.class)
+                .verify();
+        assertEquals(2, attempts.get());
+        assertFalse(retryBudget.tryAcquireRetry());
+    }
+
+    @Test
+    void retrySpec_stopsBeforeDeadline(){
+        //given
+        retryPolicy.setFirstBackoff(Duration.ofSeconds(1));
+        retryPolicy.setMaxBackoff(Duration.ofSeconds(1));
+        retryPolicy.setDeadline(Duration.ZERO);
+        var attempts = new AtomicInteger();
+        var call = Mono.error(new MoviesInfoServerException("Server Exception"))
+                .doOnSubscribe(subscription -> attempts.incrementAndGet());
+
+        //when
+        var result = call.retryWhen(RetryUtil.getRetrySpec(retryPolicy, new RetryBudget(retryPolicy)));
+
+        //then
+        StepVerifier.create(result)
+                .expectError(MoviesInfoServerException.class)
+                .verify();
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void streamRetrySpec_countsAttemptsSinceLastDelivery(){
+        //given
+        retryPolicy.setFirstBackoff(Duration.ofMillis(10));
+        var subscriptions = new AtomicInteger();
+        // every connection delivers an event before dropping, until the sixth ends the stream
+        var stream = Flux.defer(() -> subscriptions.incrementAndGet() < 6
+                ? Flux.just("event").concatWith(Mono.error(new MoviesInfoServerException("Server Exception")))
+                : Flux.just("event"));
+
+        //when
+        var result = stream.retryWhen(RetryUtil.getStreamRetrySpec(retryPolicy, new RetryBudget(retryPolicy)));
+
+        //then
+        StepVerifier.create(result)
+                .expectNextCount(6)
+                .verifyComplete();
+        assertEquals(6, subscriptions.get());
+    }
+}
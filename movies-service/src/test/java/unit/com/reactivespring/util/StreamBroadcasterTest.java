@@ -0,0 +1,100 @@
+package com.reactivespring.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StreamBroadcasterTest {
+
+    private StreamBroadcaster<String> broadcaster(Flux<String> upstream, int replayHistory, int subscriberBufferSize) {
+        return new StreamBroadcaster<>("test", upstream, replayHistory, Duration.ofMinutes(1), subscriberBufferSize,
+                Duration.ofMillis(10), Duration.ofMillis(50), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void asFlux_sharesOneUpstreamSubscription(){
+        //given
+        var subscriptions = new AtomicInteger();
+        var upstream = Sinks.many().multicast().<String>directBestEffort();
+        var broadcaster = broadcaster(upstream.asFlux()
+                .doOnSubscribe(subscription -> subscriptions.incrementAndGet()), 0, 16);
+
+        //when
+        var first = broadcaster.asFlux().take(2);
+        var second = broadcaster.asFlux().take(2);
+
+        //then
+        StepVerifier.create(Flux.merge(first, second))
+                .then(() -> {
+                    upstream.tryEmitNext("Batman Begins");
+                    upstream.tryEmitNext("The Dark Knight");
+                })
+                .expectNextCount(4)
+                .verifyComplete();
+        assertEquals(1, subscriptions.get());
+    }
+
+    @Test
+    void asFlux_lateSubscriberGetsReplayWindow(){
+        //given
+        var upstream = Sinks.many().multicast().<String>directBestEffort();
+        var broadcaster = broadcaster(upstream.asFlux(), 2, 16);
+        var early = broadcaster.asFlux().subscribe();
+
+        //when
+        upstream.tryEmitNext("Batman Begins");
+        upstream.tryEmitNext("The Dark Knight");
+        upstream.tryEmitNext("Dark Knight Rises");
+
+        //then
+        StepVerifier.create(broadcaster.asFlux().take(2))
+                .expectNext("The Dark Knight", "Dark Knight Rises")
+                .verifyComplete();
+        early.dispose();
+    }
+
+    @Test
+    void asFlux_reconnectsAfterUpstreamError(){
+        //given
+        var subscriptions = new AtomicInteger();
+        var upstream = Flux.defer(() -> subscriptions.incrementAndGet() == 1
+                ? Flux.just("Batman Begins").concatWith(Flux.error(new RuntimeException("connection reset")))
+                : Flux.just("The Dark Knight").concatWith(Flux.never()));
+        var broadcaster = broadcaster(upstream, 0, 16);
+
+        //then
+        StepVerifier.create(broadcaster.asFlux().take(2))
+                .expectNext("Batman Begins", "The Dark Knight")
+                .verifyComplete();
+        assertEquals(2.0, broadcaster.getUpstreamConnectCount());
+    }
+
+    @Test
+    void asFlux_slowSubscriberDropsOldest(){
+        //given
+        var upstream = Sinks.many().multicast().<String>directBestEffort();
+        var broadcaster = broadcaster(upstream.asFlux(), 0, 2);
+
+        //then
+        StepVerifier.create(broadcaster.asFlux(), 0)
+                .then(() -> {
+                    upstream.tryEmitNext("1");
+                    upstream.tryEmitNext("2");
+                    upstream.tryEmitNext("3");
+                    upstream.tryEmitNext("4");
+                })
+                .thenRequest(2)
+                .expectNext("3", "4")
+                .thenCancel()
+                .verify();
+        assertEquals(2.0, broadcaster.getDroppedCount());
+        assertEquals(0, broadcaster.getSubscriberCount());
+    }
+}
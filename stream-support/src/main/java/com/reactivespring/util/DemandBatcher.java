@@ -0,0 +1,162 @@
+package com.reactivespring.util;
+
+import org.reactivestreams.Subscription;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Groups a stream into lists of up to {@code batchSize} elements, sent once full or {@code maxDelay}
+ * after their first element arrived. Unlike {@code bufferTimeout} it holds at most one batch and
+ * only requests from upstream as many elements as it has handed on, so a subscriber that stops
+ * requesting holds back the source instead of failing with an overflow error.
+ */
+public class DemandBatcher<T> extends BaseSubscriber<T> {
+
+    private final FluxSink<List<T>> sink;
+    private final int batchSize;
+    private final Duration maxDelay;
+    private final Duration idleInterval;
+    private final List<T> pending = new ArrayList<>();
+    private final AtomicInteger wip = new AtomicInteger();
+    // guarded by pending
+    private Disposable timer = Disposables.disposed();
+    private boolean timedOut;
+    private volatile Disposable idleTimer = Disposables.disposed();
+    private volatile long lastEmit = System.nanoTime();
+    private volatile boolean done;
+    private volatile Throwable failure;
+
+    private DemandBatcher(FluxSink<List<T>> sink, int batchSize, Duration maxDelay, Duration idleInterval) {
+        this.sink = sink;
+        this.batchSize = batchSize;
+        this.maxDelay = maxDelay;
+        this.idleInterval = idleInterval;
+    }
+
+    public static <T> Flux<List<T>> batch(Flux<T> source, int batchSize, Duration maxDelay) {
+        return batch(source, batchSize, maxDelay, Duration.ZERO);
+    }
+
+    /**
+     * As {@link #batch(Flux, int, Duration)}, plus an empty list whenever nothing has been sent for
+     * {@code idleInterval} and the subscriber has asked for more; zero turns that off.
+     */
+    public static <T> Flux<List<T>> batch(Flux<T> source, int batchSize, Duration maxDelay, Duration idleInterval) {
+        return Flux.create(sink -> {
+            var batcher = new DemandBatcher<T>(sink, Math.max(1, batchSize), maxDelay, idleInterval);
+            sink.onRequest(requested -> batcher.drain());
+            sink.onDispose(batcher);
+            source.subscribe(batcher);
+        });
+    }
+
+    @Override
+    protected void hookOnSubscribe(Subscription subscription) {
+        if (!idleInterval.isZero() && !idleInterval.isNegative()) {
+            idleTimer = Schedulers.parallel().schedulePeriodically(this::drain,
+                    idleInterval.toMillis(), idleInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        request(batchSize);
+    }
+
+    @Override
+    protected void hookOnNext(T element) {
+        synchronized (pending) {
+            pending.add(element);
+            if (pending.size() == 1 && batchSize > 1) {
+                startTimer();
+            }
+        }
+        drain();
+    }
+
+    @Override
+    protected void hookOnComplete() {
+        done = true;
+        drain();
+    }
+
+    @Override
+    protected void hookOnError(Throwable throwable) {
+        failure = throwable;
+        done = true;
+        drain();
+    }
+
+    @Override
+    protected void hookFinally(SignalType type) {
+        idleTimer.dispose();
+        synchronized (pending) {
+            timer.dispose();
+        }
+    }
+
+    private void startTimer() {
+        timedOut = false;
+        timer.dispose();
+        timer = Schedulers.parallel().schedule(() -> {
+            synchronized (pending) {
+                timedOut = true;
+            }
+            drain();
+        }, maxDelay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        var missed = 1;
+        do {
+            while (sink.requestedFromDownstream() > 0) {
+                List<T> batch;
+                synchronized (pending) {
+                    if (pending.isEmpty() || (pending.size() < batchSize && !timedOut && !done)) {
+                        break;
+                    }
+                    var taken = pending.subList(0, Math.min(batchSize, pending.size()));
+                    batch = new ArrayList<>(taken);
+                    taken.clear();
+                    timer.dispose();
+                    timedOut = false;
+                    if (!pending.isEmpty() && batchSize > 1) {
+                        startTimer();
+                    }
+                }
+                lastEmit = System.nanoTime();
+                sink.next(batch);
+                request(batch.size());
+            }
+            if (done) {
+                boolean empty;
+                synchronized (pending) {
+                    empty = pending.isEmpty();
+                }
+                if (empty) {
+                    if (failure != null) {
+                        sink.error(failure);
+                    } else {
+                        sink.complete();
+                    }
+                    return;
+                }
+            } else if (!idleTimer.isDisposed() && sink.requestedFromDownstream() > 0
+                    && System.nanoTime() - lastEmit >= idleInterval.toNanos()) {
+                lastEmit = System.nanoTime();
+                sink.next(List.of());
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+}
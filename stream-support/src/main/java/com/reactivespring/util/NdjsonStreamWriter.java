@@ -0,0 +1,71 @@
+package com.reactivespring.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Encodes a stream as NDJSON, one buffer per batch of up to {@code batchSize} lines so each
+ * batch is a single write and flush. A batch goes out once full, or {@code maxDelay} after its
+ * first element arrived. A bare newline is sent after {@code heartbeatInterval} without
+ * writes, which NDJSON readers skip, so proxies don't close idle streams.
+ */
+public class NdjsonStreamWriter {
+
+    private static final byte[] NEWLINE = {'\n'};
+
+    private final ObjectMapper objectMapper;
+    private final Duration heartbeatInterval;
+    private final int maxBatchSize;
+    private final Duration defaultMaxDelay;
+    private final Duration maxMaxDelay;
+
+    public NdjsonStreamWriter(ObjectMapper objectMapper, Duration heartbeatInterval,
+                              int maxBatchSize, Duration defaultMaxDelay, Duration maxMaxDelay) {
+        this.objectMapper = objectMapper;
+        this.heartbeatInterval = heartbeatInterval;
+        this.maxBatchSize = maxBatchSize;
+        this.defaultMaxDelay = defaultMaxDelay;
+        this.maxMaxDelay = maxMaxDelay;
+    }
+
+    /**
+     * {@code batchSize} and {@code maxDelayMs} come from the client and are capped by the configured limits;
+     * without a batch size every element is written as soon as it arrives.
+     */
+    public <T> Flux<DataBuffer> write(Flux<T> elements, Integer batchSize, Long maxDelayMs, DataBufferFactory bufferFactory) {
+        var size = batchSize == null ? 1 : Math.max(1, Math.min(batchSize, maxBatchSize));
+        var maxDelay = maxDelayMs == null ? defaultMaxDelay : Duration.ofMillis(Math.max(0, maxDelayMs));
+        if (maxDelay.compareTo(maxMaxDelay) > 0) {
+            maxDelay = maxMaxDelay;
+        }
+
+        if (size == 1 && (heartbeatInterval.isZero() || heartbeatInterval.isNegative())) {
+            return elements.map(element -> bufferFactory.wrap(encode(List.of(element))));
+        }
+        // heartbeats come out of the batcher too, so they are only written when the client asked
+        // for more, and nothing is prefetched beyond the one batch it holds
+        return DemandBatcher.batch(elements, size, maxDelay, heartbeatInterval)
+                .map(batch -> bufferFactory.wrap(batch.isEmpty() ? NEWLINE : encode(batch)));
+    }
+
+    private <T> byte[] encode(List<T> batch) {
+        var out = new ByteArrayOutputStream();
+        try {
+            for (var element : batch) {
+                out.write(objectMapper.writeValueAsBytes(element));
+                out.write('\n');
+            }
+        } catch (IOException e) {
+            throw Exceptions.propagate(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,188 @@
+package com.reactivespring.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Gives each subscriber of a hot stream its own buffer of at most {@code bufferSize} elements,
+ * so a slow subscriber only ever costs its own buffer. What happens once a subscriber lags
+ * that far behind is decided by the {@link Policy}.
+ */
+@Slf4j
+public class SlowConsumerBuffer {
+
+    public enum Policy {
+        // keep the newest bufferSize elements
+        DROP_OLDEST,
+        // keep only the latest element per key, and at most bufferSize keys; elements still go out in
+        // the order they arrived, so a later element never overtakes an earlier one for another key
+        CONFLATE,
+        // end the subscriber's stream, so it reconnects and resumes from where it got to
+        DISCONNECT
+    }
+
+    private final String name;
+    private final Policy policy;
+    private final int bufferSize;
+    // one entry per live subscriber: the elements it has been sent but not yet taken
+    private final Set<AtomicInteger> lags = ConcurrentHashMap.newKeySet();
+    private final Counter dropped;
+    private final Counter conflated;
+    private final Counter disconnected;
+
+    public SlowConsumerBuffer(String metricPrefix, Policy policy, int bufferSize, MeterRegistry meterRegistry) {
+        this.name = metricPrefix;
+        this.policy = policy;
+        this.bufferSize = bufferSize;
+        this.dropped = Counter.builder(metricPrefix + ".dropped")
+                .description("Elements dropped from a slow subscriber's buffer")
+                .tag("policy", policy.name())
+                .register(meterRegistry);
+        this.conflated = Counter.builder(metricPrefix + ".conflated")
+                .description("Elements replaced in a slow subscriber's buffer by a later one for the same key")
+                .tag("policy", policy.name())
+                .register(meterRegistry);
+        this.disconnected = Counter.builder(metricPrefix + ".disconnected")
+                .description("Subscribers disconnected for lagging a full buffer behind")
+                .tag("policy", policy.name())
+                .register(meterRegistry);
+        Gauge.builder(metricPrefix + ".subscribers", lags, Set::size)
+                .description("Subscribers with their own buffer")
+                .register(meterRegistry);
+        Gauge.builder(metricPrefix + ".subscriber.lag.max", this, SlowConsumerBuffer::maxLag)
+                .description("Elements buffered for the subscriber furthest behind")
+                .register(meterRegistry);
+        Gauge.builder(metricPrefix + ".subscriber.lag.total", this, SlowConsumerBuffer::totalLag)
+                .description("Elements buffered across all subscribers")
+                .register(meterRegistry);
+    }
+
+    /**
+     * {@code source} through a buffer of its own; {@code keyOf} is only used by {@link Policy#CONFLATE}.
+     */
+    public <T> Flux<T> apply(Flux<T> source, Function<T, ?> keyOf) {
+        return Flux.defer(() -> {
+            var lag = new AtomicInteger();
+            lags.add(lag);
+            var buffered = policy == Policy.CONFLATE
+                    ? conflate(source, keyOf, lag)
+                    : bounded(source, lag);
+            return buffered.doFinally(signalType -> lags.remove(lag));
+        });
+    }
+
+    public int maxLag() {
+        return lags.stream().mapToInt(AtomicInteger::get).max().orElse(0);
+    }
+
+    public long totalLag() {
+        return lags.stream().mapToLong(AtomicInteger::get).sum();
+    }
+
+    private <T> Flux<T> bounded(Flux<T> source, AtomicInteger lag) {
+        if (policy == Policy.DISCONNECT) {
+            return source
+                    .doOnNext(element -> lag.incrementAndGet())
+                    .onBackpressureBuffer(bufferSize, element -> {
+                        lag.decrementAndGet();
+                        disconnected.increment();
+                        log.warn("Disconnecting {} subscriber lagging {} elements behind", name, bufferSize);
+                    }, BufferOverflowStrategy.ERROR)
+                    .doOnNext(element -> lag.decrementAndGet());
+        }
+        return source
+                .doOnNext(element -> lag.incrementAndGet())
+                .onBackpressureBuffer(bufferSize, element -> {
+                    lag.decrementAndGet();
+                    dropped.increment();
+                }, BufferOverflowStrategy.DROP_OLDEST)
+                .doOnNext(element -> lag.decrementAndGet());
+    }
+
+    private <T> Flux<T> conflate(Flux<T> source, Function<T, ?> keyOf, AtomicInteger lag) {
+        return Flux.create(sink -> {
+            // insertion ordered; a newer element for a pending key drops the older one and joins at the tail
+            var pending = new LinkedHashMap<Object, T>();
+            var wip = new AtomicInteger();
+            var done = new AtomicBoolean();
+            var failure = new AtomicReference<Throwable>();
+
+            Runnable drain = () -> {
+                if (wip.getAndIncrement() != 0) {
+                    return;
+                }
+                var missed = 1;
+                do {
+                    while (sink.requestedFromDownstream() > 0) {
+                        T next;
+                        synchronized (pending) {
+                            var iterator = pending.values().iterator();
+                            if (!iterator.hasNext()) {
+                                break;
+                            }
+                            next = iterator.next();
+                            iterator.remove();
+                            lag.set(pending.size());
+                        }
+                        sink.next(next);
+                    }
+                    if (done.get()) {
+                        boolean empty;
+                        synchronized (pending) {
+                            empty = pending.isEmpty();
+                        }
+                        if (empty) {
+                            if (failure.get() != null) {
+                                sink.error(failure.get());
+                            } else {
+                                sink.complete();
+                            }
+                            return;
+                        }
+                    }
+                    missed = wip.addAndGet(-missed);
+                } while (missed != 0);
+            };
+
+            var upstream = source.subscribe(element -> {
+                synchronized (pending) {
+                    var key = keyOf.apply(element);
+                    var replaced = pending.remove(key) != null;
+                    pending.put(key, element);
+                    if (replaced) {
+                        conflated.increment();
+                    } else if (pending.size() > bufferSize) {
+                        var eldest = pending.keySet().iterator();
+                        eldest.next();
+                        eldest.remove();
+                        dropped.increment();
+                    }
+                    lag.set(pending.size());
+                }
+                drain.run();
+            }, error -> {
+                failure.set(error);
+                done.set(true);
+                drain.run();
+            }, () -> {
+                done.set(true);
+                drain.run();
+            });
+
+            sink.onRequest(requested -> drain.run());
+            sink.onDispose(upstream);
+        });
+    }
+}
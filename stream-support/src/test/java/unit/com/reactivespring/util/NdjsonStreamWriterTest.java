@@ -0,0 +1,111 @@
+package com.reactivespring.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class NdjsonStreamWriterTest {
+
+    private final DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+    private final Sinks.Many<String> source = Sinks.many().multicast().directBestEffort();
+
+    @Test
+    void write_oneLinePerElementWithoutBatch() {
+        var writer = writer(Duration.ZERO);
+
+        StepVerifier.create(writer.write(Flux.just("a", "b"), null, null, bufferFactory).map(this::text))
+                .expectNext("\"a\"\n", "\"b\"\n")
+                .verifyComplete();
+    }
+
+    @Test
+    void write_fullBatchesInOneBuffer() {
+        var writer = writer(Duration.ZERO);
+
+        StepVerifier.create(writer.write(Flux.just("a", "b", "c", "d", "e"), 2, 10_000L, bufferFactory).map(this::text))
+                .expectNext("\"a\"\n\"b\"\n", "\"c\"\n\"d\"\n", "\"e\"\n")
+                .verifyComplete();
+    }
+
+    @Test
+    void write_batchSizeCappedByMaxSize() {
+        var writer = writer(Duration.ZERO);
+
+        StepVerifier.create(writer.write(Flux.just("a", "b", "c", "d", "e"), 1000, 10_000L, bufferFactory).map(this::text))
+                .expectNext("\"a\"\n\"b\"\n\"c\"\n\"d\"\n", "\"e\"\n")
+                .verifyComplete();
+    }
+
+    @Test
+    void write_partialBatchFlushedAfterMaxDelay() {
+        var writer = writer(Duration.ZERO);
+
+        StepVerifier.create(writer.write(source.asFlux(), 50, 20L, bufferFactory).map(this::text))
+                .then(() -> {
+                    source.tryEmitNext("a");
+                    source.tryEmitNext("b");
+                })
+                .expectNext("\"a\"\n\"b\"\n")
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void write_heartbeatWhileIdle() {
+        var writer = writer(Duration.ofMillis(50));
+
+        StepVerifier.create(writer.write(source.asFlux(), null, null, bufferFactory).map(this::text))
+                .expectNext("\n", "\n")
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void write_stalledClientLeavesOverflowToSlowConsumerBuffer() {
+        var meterRegistry = new SimpleMeterRegistry();
+        var buffer = new SlowConsumerBuffer("test.stream", SlowConsumerBuffer.Policy.DROP_OLDEST, 2, meterRegistry);
+        // heartbeats on, but too far apart to take the test's demand
+        var writer = writer(Duration.ofSeconds(10));
+
+        StepVerifier.create(writer.write(buffer.apply(source.asFlux(), Function.identity()), 2, 10_000L, bufferFactory)
+                        .map(this::text), 1)
+                .then(() -> emit("a", "b"))
+                .expectNext("\"a\"\n\"b\"\n")
+                .then(() -> {
+                    // the writer holds one more batch, c and d; the rest queue up in the client's buffer
+                    emit("c", "d", "e", "f", "g", "h", "i", "j");
+                    assertEquals(2, buffer.maxLag());
+                })
+                .thenRequest(2)
+                .expectNext("\"c\"\n\"d\"\n", "\"i\"\n\"j\"\n")
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(4.0, meterRegistry.get("test.stream.dropped").counter().count());
+    }
+
+    private NdjsonStreamWriter writer(Duration heartbeatInterval) {
+        return new NdjsonStreamWriter(new ObjectMapper(), heartbeatInterval, 4, Duration.ofMillis(20), Duration.ofSeconds(1));
+    }
+
+    private void emit(String... elements) {
+        for (var element : elements) {
+            source.tryEmitNext(element);
+        }
+    }
+
+    private String text(DataBuffer buffer) {
+        return buffer.toString(StandardCharsets.UTF_8);
+    }
+}
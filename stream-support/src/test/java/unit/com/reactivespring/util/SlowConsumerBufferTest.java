@@ -0,0 +1,96 @@
+package com.reactivespring.util;
+
+import com.reactivespring.util.SlowConsumerBuffer.Policy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SlowConsumerBufferTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Sinks.Many<String> source = Sinks.many().multicast().directBestEffort();
+
+    // keyed by the letter, so "a1" and "a2" are two versions of "a"
+    private final Function<String, Object> keyOf = element -> element.charAt(0);
+
+    @Test
+    void dropOldest_keepsNewestElements() {
+        var buffer = new SlowConsumerBuffer("test.stream", Policy.DROP_OLDEST, 2, meterRegistry);
+
+        StepVerifier.create(buffer.apply(source.asFlux(), keyOf), 0)
+                .then(() -> {
+                    emit("a1", "b1", "c1", "d1");
+                    assertEquals(2, buffer.maxLag());
+                })
+                .thenRequest(2)
+                .expectNext("c1", "d1")
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(2.0, meterRegistry.get("test.stream.dropped").counter().count());
+        assertEquals(0, buffer.totalLag());
+    }
+
+    @Test
+    void conflate_keepsLatestPerKeyInArrivalOrder() {
+        var buffer = new SlowConsumerBuffer("test.stream", Policy.CONFLATE, 3, meterRegistry);
+
+        // the digit stands in for an offset, which a resuming subscriber needs to see rise
+        StepVerifier.create(buffer.apply(source.asFlux(), keyOf), 0)
+                .then(() -> {
+                    emit("a1", "b2", "a3", "c4", "b5");
+                    assertEquals(3, buffer.maxLag());
+                })
+                .thenRequest(3)
+                .expectNext("a3", "c4", "b5")
+                .then(() -> emit("c6", "a7", "c8"))
+                .thenRequest(2)
+                .expectNext("a7", "c8")
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(3.0, meterRegistry.get("test.stream.conflated").counter().count());
+    }
+
+    @Test
+    void conflate_dropsEldestKeyBeyondBufferSize() {
+        var buffer = new SlowConsumerBuffer("test.stream", Policy.CONFLATE, 2, meterRegistry);
+
+        StepVerifier.create(buffer.apply(source.asFlux(), keyOf), 0)
+                .then(() -> emit("a1", "b1", "c1"))
+                .thenRequest(2)
+                .expectNext("b1", "c1")
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(1.0, meterRegistry.get("test.stream.dropped").counter().count());
+    }
+
+    @Test
+    void disconnect_endsStreamOfLaggingSubscriber() {
+        var buffer = new SlowConsumerBuffer("test.stream", Policy.DISCONNECT, 2, meterRegistry);
+
+        StepVerifier.create(buffer.apply(source.asFlux(), keyOf), 0)
+                .then(() -> emit("a1", "b1", "c1"))
+                .thenRequest(2)
+                .expectNext("a1", "b1")
+                .expectErrorMatches(Exceptions::isOverflow)
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(1.0, meterRegistry.get("test.stream.disconnected").counter().count());
+        assertEquals(0, meterRegistry.get("test.stream.subscribers").gauge().value());
+    }
+
+    private void emit(String... elements) {
+        for (var element : elements) {
+            source.tryEmitNext(element);
+        }
+    }
+}